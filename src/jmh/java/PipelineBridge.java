@@ -0,0 +1,123 @@
+import benchmark.Pipeline;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Runs the stages of the pipeline for the benchmarks in the
+ * {@code benchmark} package.  See {@code benchmark.Pipeline} for why this
+ * class exists.
+ * @version 1.0
+ * @author agent
+ */
+public class PipelineBridge implements Pipeline {
+    private String sb2Path;
+    private JSONObject stage;
+    private List<JSONArray> scriptArrays;
+    private Script[] scripts;
+    private List<Sb2> sb2List;
+    private Reporter reporter;
+
+    @Override
+    public void load(File sb2File) throws IOException {
+        sb2Path = sb2File.getPath();
+        stage = Sb2.createJSONObject(Extractor.getProjectJSON(sb2Path));
+        scriptArrays = new ArrayList<>();
+        addScriptArray(stage);
+        JSONArray children = stage.optJSONArray("children");
+        for (int i = 0; children != null && i < children.length(); i++) {
+            JSONObject child = children.optJSONObject(i);
+            if (child != null) {
+                addScriptArray(child);
+            }
+        }
+        scripts = (Script[]) constructScripts();
+        for (Script script : scripts) {
+            script.getAnalysis();
+        }
+        Sb2 sb2 = new Sb2(sb2Path);
+        if (sb2.getErrorMessage() != null) {
+            throw new IOException(sb2Path + ": " + sb2.getErrorMessage());
+        }
+        sb2List = Collections.singletonList(sb2);
+        reporter = new Reporter(Reporter.REPORT_ALL);
+    }
+
+    /**
+     * Keep the scripts array of a stage or sprite, if it has one.
+     * @param object The stage or sprite.
+     */
+    private void addScriptArray(JSONObject object) {
+        JSONArray scriptArray = object.optJSONArray("scripts");
+        if (scriptArray != null) {
+            scriptArrays.add(scriptArray);
+        }
+    }
+
+    @Override
+    public Object extractProjectJson() throws IOException {
+        return Extractor.getProjectJSON(sb2Path);
+    }
+
+    @Override
+    public Object readProjectJson() throws IOException {
+        return Extractor.getProjectJSONObject(sb2Path);
+    }
+
+    @Override
+    public Object constructSb2() {
+        return new Sb2(sb2Path);
+    }
+
+    @Override
+    public Object constructSprites() {
+        return new Sprites(stage);
+    }
+
+    @Override
+    public Object constructScripts() {
+        List<Script> all = new ArrayList<>();
+        for (JSONArray scriptArray : scriptArrays) {
+            Collections.addAll(all, Script.getScriptArray(scriptArray));
+        }
+        return all.toArray(new Script[all.size()]);
+    }
+
+    @Override
+    public int analyzeScripts() {
+        int checksum = 0;
+        for (Script script : scripts) {
+            ScriptAnalysis analysis = ScriptAnalysis.analyze(script.getBlockTree());
+            checksum += analysis.getLength() + analysis.getCategoryCount(0);
+        }
+        return checksum;
+    }
+
+    @Override
+    public int sumBlocksByCategory() {
+        int checksum = 0;
+        for (Script script : scripts) {
+            checksum += script.sumBlocksByCategory()[0];
+        }
+        return checksum;
+    }
+
+    @Override
+    public int getLength() {
+        int total = 0;
+        for (Script script : scripts) {
+            total += script.getLength();
+        }
+        return total;
+    }
+
+    @Override
+    public void writeReport(Writer writer) {
+        reporter.writeReport(writer, sb2List);
+    }
+}
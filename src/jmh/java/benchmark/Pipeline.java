@@ -0,0 +1,85 @@
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * The stages of the Extractor, Sb2, Reporter pipeline, as the benchmarks
+ * see them.  JMH will not generate code for benchmarks in the default
+ * package, and code in a named package cannot name the default package
+ * classes of the application, so the benchmarks call the application
+ * through this interface.  {@code PipelineBridge} implements it in the
+ * default package.  There is only one implementation, so the JIT inlines
+ * the calls and they cost nothing in the measurements.
+ * @version 1.0
+ * @author agent
+ */
+public interface Pipeline {
+    /**
+     * Read one .sb2 file and keep everything the other stages start from.
+     * @param sb2File The project to benchmark with.
+     * @throws IOException if the project cannot be read.
+     */
+    void load(File sb2File) throws IOException;
+
+    /**
+     * Extract project.json as a String with {@code Extractor.getProjectJSON}.
+     * @return The json text.
+     * @throws IOException if the project cannot be read.
+     */
+    Object extractProjectJson() throws IOException;
+
+    /**
+     * Extract and parse the pruned project.json tree with
+     * {@code Extractor.getProjectJSONObject}.
+     * @return The tree.
+     * @throws IOException if the project cannot be read.
+     */
+    Object readProjectJson() throws IOException;
+
+    /**
+     * Construct an Sb2 from the file, as a report does.
+     * @return The Sb2.
+     */
+    Object constructSb2();
+
+    /**
+     * Construct Sprites from the already parsed stage.
+     * @return The Sprites.
+     */
+    Object constructSprites();
+
+    /**
+     * Construct every Script of the project from its json.
+     * @return The scripts.
+     */
+    Object constructScripts();
+
+    /**
+     * Analyse the blocks of every script afresh.  This is the work the first
+     * call to {@code Script.sumBlocksByCategory} or {@code Script.getLength}
+     * does on a Script.
+     * @return A checksum of the analyses.
+     */
+    int analyzeScripts();
+
+    /**
+     * Call {@code Script.sumBlocksByCategory} on every script.  The scripts
+     * have been analysed already, as they have by the time a report asks.
+     * @return A checksum of the counts.
+     */
+    int sumBlocksByCategory();
+
+    /**
+     * Call {@code Script.getLength} on every script.
+     * @return The total length.
+     */
+    int getLength();
+
+    /**
+     * Write the full report on the project.
+     * @param writer Where to write it.
+     */
+    void writeReport(Writer writer);
+}
@@ -0,0 +1,190 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for each stage of the Extractor, Sb2, Reporter pipeline, on a
+ * small, a medium and a Scratcharia sized project from the test resources.
+ * Run with {@code gradle jmh}, which turns on the gc profiler so allocation
+ * rates are reported next to the times.
+ * @version 1.0
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+    private static final String SMALL = "/GoodSb2Dir/Calamity Jane (Horse) Polyart.sb2";
+    private static final String MEDIUM = "/GoodSb2Dir/My Mascot! (Gobia!) -D.sb2";
+    private static final String LARGE = "/GoodSb2Dir/Scratcharia/Scratcharia v2.8.1.sb2";
+    private static final String BRIDGE = "PipelineBridge";
+
+    @Param({"small", "medium", "scratcharia"})
+    private String size;
+    private Pipeline pipeline;
+
+    /**
+     * Load the project for this trial.
+     * @throws Exception if the project or the bridge cannot be loaded.
+     */
+    @Setup
+    public void setUp() throws Exception {
+        pipeline = (Pipeline) Class.forName(BRIDGE).newInstance();
+        pipeline.load(getResourceFile(getResourceName(size)));
+    }
+
+    /**
+     * Extract project.json as a String.
+     * @return The json text.
+     * @throws IOException if the project cannot be read.
+     */
+    @Benchmark
+    public Object extractProjectJson() throws IOException {
+        return pipeline.extractProjectJson();
+    }
+
+    /**
+     * Extract and parse project.json into the pruned tree.
+     * @return The tree.
+     * @throws IOException if the project cannot be read.
+     */
+    @Benchmark
+    public Object readProjectJson() throws IOException {
+        return pipeline.readProjectJson();
+    }
+
+    /**
+     * Construct an Sb2 from the file.
+     * @return The Sb2.
+     */
+    @Benchmark
+    public Object constructSb2() {
+        return pipeline.constructSb2();
+    }
+
+    /**
+     * Construct Sprites from the parsed stage.
+     * @return The Sprites.
+     */
+    @Benchmark
+    public Object constructSprites() {
+        return pipeline.constructSprites();
+    }
+
+    /**
+     * Construct every Script.
+     * @return The scripts.
+     */
+    @Benchmark
+    public Object constructScripts() {
+        return pipeline.constructScripts();
+    }
+
+    /**
+     * Analyse every script afresh.
+     * @return A checksum.
+     */
+    @Benchmark
+    public int analyzeScripts() {
+        return pipeline.analyzeScripts();
+    }
+
+    /**
+     * Script.sumBlocksByCategory on every script.
+     * @return A checksum.
+     */
+    @Benchmark
+    public int sumBlocksByCategory() {
+        return pipeline.sumBlocksByCategory();
+    }
+
+    /**
+     * Script.getLength on every script.
+     * @return The total length.
+     */
+    @Benchmark
+    public int getLength() {
+        return pipeline.getLength();
+    }
+
+    /**
+     * Write the full report on the project to a writer that discards it.
+     */
+    @Benchmark
+    public void writeReport() {
+        pipeline.writeReport(new NullWriter());
+    }
+
+    /**
+     * The resource to benchmark with.
+     * @param size One of the values of the size parameter.
+     * @return The resource name.
+     */
+    private static String getResourceName(String size) {
+        switch (size) {
+            case "small":
+                return SMALL;
+            case "medium":
+                return MEDIUM;
+            case "scratcharia":
+                return LARGE;
+            default:
+                throw new IllegalArgumentException("Unknown size " + size);
+        }
+    }
+
+    /**
+     * Find a resource on the class path as a file.
+     * @param name The resource name.
+     * @return The file.
+     * @throws URISyntaxException if the resource has no usable file name.
+     */
+    private static File getResourceFile(String name) throws URISyntaxException {
+        URL url = PipelineBenchmark.class.getResource(name);
+        if (url == null) {
+            throw new IllegalStateException("Missing benchmark resource " + name);
+        }
+        return new File(url.toURI());
+    }
+
+    /**
+     * A Writer that throws away what is written to it, so only the work of
+     * building the report is measured.
+     */
+    private static class NullWriter extends Writer {
+        @Override
+        public void write(char[] chars, int offset, int length) {
+        }
+
+        @Override
+        public void write(String str, int offset, int length) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
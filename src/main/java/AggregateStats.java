@@ -0,0 +1,130 @@
+import java.util.Arrays;
+import java.util.stream.Collector;
+
+/**
+ * Statistics over many projects: how many there are, how long their scripts
+ * are, and how many blocks of each category they use.  Projects are added as
+ * they are read.  Stats filled by different threads merge, so parallel
+ * workers can each keep their own and combine them at the end without
+ * locks; {@link #collector()} does this for a stream.
+ * @version 1.0
+ * @author agent
+ */
+public class AggregateStats {
+    private final CountDistribution scriptLengths = new CountDistribution();
+    private final CountDistribution[] projectBlocksByCat;
+    private final long[] blocksByCat;
+    private final int[] projectBlocks;
+    private int projectCount = 0;
+    private int unreadableCount = 0;
+
+    /**
+     * Constructor.  The stats start empty.
+     */
+    public AggregateStats() {
+        int categoryCount = ScriptSpecs.getCategories().length;
+        projectBlocksByCat = new CountDistribution[categoryCount];
+        for (int i = 0; i < categoryCount; i++) {
+            projectBlocksByCat[i] = new CountDistribution();
+        }
+        blocksByCat = new long[categoryCount];
+        projectBlocks = new int[categoryCount];
+    }
+
+    /**
+     * A collector that adds the projects of a stream to new stats, and
+     * merges the stats of parallel parts of the stream.
+     * @return The collector.
+     */
+    public static Collector<ProjectSummary, ?, AggregateStats> collector() {
+        return Collector.of(AggregateStats::new, AggregateStats::add,
+            AggregateStats::merge, Collector.Characteristics.UNORDERED,
+            Collector.Characteristics.IDENTITY_FINISH);
+    }
+
+    /**
+     * Add a project.
+     * @param project The project's summary.
+     */
+    public void add(ProjectSummary project) {
+        projectCount++;
+        if (project.getErrorMessage() != null) {
+            unreadableCount++;
+            return;
+        }
+        Arrays.fill(projectBlocks, 0);
+        for (int i = 0; i < project.getStageScriptCount(); i++) {
+            ScriptAnalysis analysis = project.getStageScript(i);
+            scriptLengths.add(analysis.getLength());
+            analysis.addBlocksByCategory(projectBlocks);
+        }
+        for (int sprite = 0; sprite < project.getSpriteCount(); sprite++) {
+            for (int i = 0; i < project.getScriptCount(sprite); i++) {
+                ScriptAnalysis analysis = project.getScript(sprite, i);
+                scriptLengths.add(analysis.getLength());
+                analysis.addBlocksByCategory(projectBlocks);
+            }
+        }
+        for (int i = 0; i < projectBlocks.length; i++) {
+            blocksByCat[i] += projectBlocks[i];
+            projectBlocksByCat[i].add(projectBlocks[i]);
+        }
+    }
+
+    /**
+     * Add the projects counted by other stats to these.
+     * @param other The other stats, which are not changed.
+     * @return These stats.
+     */
+    public AggregateStats merge(AggregateStats other) {
+        projectCount += other.projectCount;
+        unreadableCount += other.unreadableCount;
+        scriptLengths.merge(other.scriptLengths);
+        for (int i = 0; i < blocksByCat.length; i++) {
+            blocksByCat[i] += other.blocksByCat[i];
+            projectBlocksByCat[i].merge(other.projectBlocksByCat[i]);
+        }
+        return this;
+    }
+
+    /**
+     * The number of projects added.
+     * @return The number of projects, including those that could not be read.
+     */
+    public int getProjectCount() {
+        return projectCount;
+    }
+
+    /**
+     * The number of projects added that could not be read.
+     * @return The number of unreadable projects.
+     */
+    public int getUnreadableCount() {
+        return unreadableCount;
+    }
+
+    /**
+     * The lengths of every script, stage scripts included.
+     * @return The distribution of script lengths.
+     */
+    public CountDistribution getScriptLengths() {
+        return scriptLengths;
+    }
+
+    /**
+     * The total blocks of each category in every script.
+     * @return Block counts indexed like {@code ScriptSpecs.getCategories}.
+     */
+    public long[] getBlocksByCategory() {
+        return blocksByCat.clone();
+    }
+
+    /**
+     * How many blocks of one category the projects that could be read use.
+     * @param category The index of the category in {@code ScriptSpecs.getCategories}.
+     * @return The distribution of block counts per project.
+     */
+    public CountDistribution getProjectBlocks(int category) {
+        return projectBlocksByCat[category];
+    }
+}
@@ -0,0 +1,354 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A persistent cache of project summaries, kept in one binary file.  Entries
+ * are keyed by the absolute path of the .sb2 file and remember its size,
+ * modification time and a SHA-256 hash of its project.json, and the
+ * {@code ProjectLimits} it was read with.  An entry is only used with the
+ * same limits, so a project cached under loose limits is read again when
+ * the limits are stricter.  A file whose size
+ * and modification time have not changed is a hit.  If only the modification
+ * time changed, project.json is hashed and compared, so a file that was
+ * touched or copied back unchanged is still a hit.  Only project.json is
+ * hashed because it is all a summary depends on, and it is hashed while it
+ * is in memory for the analysis, so a miss never reads the costumes and
+ * sounds of an archive.  The least recently used
+ * entries are dropped when the cache grows past its size limit.
+ * All methods are safe to call from several threads.
+ * @version 1.0
+ * @author agent
+ */
+public class AnalysisCache {
+    /**
+     * Default limit on the size of the cache: 64 MB.
+     */
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    private static final long MAGIC = 0x5343415454414331L;
+    private static final int VERSION = 7;
+    private static final int ENTRY_OVERHEAD = 64;
+    private static final int LIMITS_SIZE = 16;
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    private final File cacheFile;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes = 0;
+    private boolean dirty = false;
+
+    /**
+     * Construct an empty cache.  Use {@code open} to read an existing one.
+     * @param cacheFile The file the cache is saved to.
+     * @param maxBytes Limit on the size of the cache in bytes.
+     */
+    public AnalysisCache(File cacheFile, long maxBytes) {
+        this.cacheFile = cacheFile;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Read a cache from disk.  A missing, unreadable or out of date cache file
+     * gives an empty cache rather than an error: the cache only saves work.
+     * @param cacheFile The file the cache is saved to.
+     * @param maxBytes Limit on the size of the cache in bytes.
+     * @return The cache.
+     */
+    public static AnalysisCache open(File cacheFile, long maxBytes) {
+        AnalysisCache cache = new AnalysisCache(cacheFile, maxBytes);
+        if (cacheFile.isFile()) {
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(cacheFile)))) {
+                cache.read(in);
+            } catch (IOException e) {
+                cache.clear();
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Look up the summary of an .sb2 file read with the default limits.
+     * @param sb2File The .sb2 file.
+     * @return The cached summary, or null if the file is not in the cache or
+     *     has changed since it was cached.
+     */
+    public ProjectSummary get(File sb2File) {
+        return get(sb2File, ProjectLimits.DEFAULT);
+    }
+
+    /**
+     * Look up the summary of an .sb2 file.
+     * @param sb2File The .sb2 file.
+     * @param limits The limits the project is to be read with.
+     * @return The cached summary, or null if the file is not in the cache,
+     *     has changed since it was cached or was cached with other limits.
+     */
+    public ProjectSummary get(File sb2File, ProjectLimits limits) {
+        String key = sb2File.getAbsolutePath();
+        long size = sb2File.length();
+        long modified = sb2File.lastModified();
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry == null || entry.size != size || !entry.limits.equals(limits)) {
+            return null;
+        }
+        if (entry.modified != modified) {
+            byte[] hash = hash(sb2File, limits);
+            if (hash == null || !Arrays.equals(hash, entry.hash)) {
+                return null;
+            }
+            synchronized (this) {
+                entry.modified = modified;
+                dirty = true;
+            }
+        }
+        try {
+            return ProjectSummary.readFrom(
+                new DataInputStream(new ByteArrayInputStream(entry.summary)));
+        } catch (IOException e) {
+            remove(key);
+            return null;
+        }
+    }
+
+    /**
+     * Add or replace the summary of an .sb2 file.  The size and modification
+     * time must be taken before the file is read for the summary, and the
+     * hash made from the project.json that was read.  If the file has
+     * changed since then, nothing is cached, so a summary is never stored
+     * under the hash of other contents.
+     * @param sb2File The .sb2 file.
+     * @param size The size of the file when it was read.
+     * @param modified The modification time of the file when it was read.
+     * @param limits The limits it was read with.
+     * @param hash The hash of the project.json read, from a digest made by
+     *     {@code newDigest}.
+     * @param summary Its summary.
+     */
+    public void put(File sb2File, long size, long modified, ProjectLimits limits, byte[] hash,
+                    ProjectSummary summary) {
+        if (sb2File.length() != size || sb2File.lastModified() != modified) {
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            summary.writeTo(new DataOutputStream(bytes));
+        } catch (IOException e) {
+            return;
+        }
+        Entry entry = new Entry(size, modified, limits, hash, bytes.toByteArray());
+        String key = sb2File.getAbsolutePath();
+        synchronized (this) {
+            remove(key);
+            entries.put(key, entry);
+            totalBytes += entry.weight(key);
+            dirty = true;
+            evict();
+        }
+    }
+
+    /**
+     * The number of projects in the cache.
+     * @return the number of entries.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Write the cache to its file, if anything changed.  The file is replaced
+     * in one step, so a crash while saving leaves the old cache in place.
+     * @throws IOException if the cache cannot be written.
+     */
+    public synchronized void save() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        File dir = cacheFile.getAbsoluteFile().getParentFile();
+        if (dir != null) {
+            Files.createDirectories(dir.toPath());
+        }
+        File temp = new File(dir, cacheFile.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            write(out);
+        }
+        try {
+            Files.move(temp.toPath(), cacheFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        dirty = false;
+    }
+
+    /**
+     * Read entries, least recently used first.
+     * @param in Where to read from.
+     * @throws IOException if the data is not a cache of this version.
+     */
+    private void read(DataInputStream in) throws IOException {
+        if (in.readLong() != MAGIC || in.readInt() != VERSION
+            || in.readInt() != ScriptSpecs.getCategories().length) {
+            throw new IOException("Not a current analysis cache");
+        }
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String key = in.readUTF();
+            long size = in.readLong();
+            long modified = in.readLong();
+            ProjectLimits limits = new ProjectLimits(in.readLong(), in.readInt(), in.readInt());
+            byte[] hash = new byte[in.readUnsignedByte()];
+            in.readFully(hash);
+            byte[] summary = new byte[in.readInt()];
+            in.readFully(summary);
+            Entry entry = new Entry(size, modified, limits, hash, summary);
+            entries.put(key, entry);
+            totalBytes += entry.weight(key);
+        }
+        evict();
+    }
+
+    /**
+     * Write entries, least recently used first.
+     * @param out Where to write.
+     * @throws IOException if writing fails.
+     */
+    private void write(DataOutputStream out) throws IOException {
+        out.writeLong(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(ScriptSpecs.getCategories().length);
+        out.writeInt(entries.size());
+        for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+            Entry entry = mapEntry.getValue();
+            out.writeUTF(mapEntry.getKey());
+            out.writeLong(entry.size);
+            out.writeLong(entry.modified);
+            out.writeLong(entry.limits.getMaxBytes());
+            out.writeInt(entry.limits.getMaxDepth());
+            out.writeInt(entry.limits.getMaxBlocks());
+            out.writeByte(entry.hash.length);
+            out.write(entry.hash);
+            out.writeInt(entry.summary.length);
+            out.write(entry.summary);
+        }
+    }
+
+    /**
+     * Drop least recently used entries until the cache fits its limit.
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Entry> mapEntry = eldest.next();
+            totalBytes -= mapEntry.getValue().weight(mapEntry.getKey());
+            eldest.remove();
+            dirty = true;
+        }
+    }
+
+    /**
+     * Remove an entry.
+     * @param key The entry's key.
+     */
+    private synchronized void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            totalBytes -= entry.weight(key);
+            dirty = true;
+        }
+    }
+
+    /**
+     * Remove every entry.
+     */
+    private synchronized void clear() {
+        entries.clear();
+        totalBytes = 0;
+    }
+
+    /**
+     * A new digest of the kind entries are hashed with.
+     * @return The digest.
+     */
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Hash the project.json of an .sb2 file, the same way a hash given to
+     * {@code put} is made.  An archive without project.json hashes as empty.
+     * @param sb2File The .sb2 file.
+     * @param limits The limits the project is to be read with.
+     * @return The SHA-256 hash, or null if the file cannot be read.
+     */
+    static byte[] hash(File sb2File, ProjectLimits limits) {
+        MessageDigest digest = newDigest();
+        try {
+            Extractor.digestProjectJSON(sb2File.getAbsolutePath(), limits, digest);
+        } catch (IOException e) {
+            return null;
+        }
+        return digest.digest();
+    }
+
+    /**
+     * One cached project.
+     */
+    private static class Entry {
+        private final long size;
+        private volatile long modified;
+        private final ProjectLimits limits;
+        private final byte[] hash;
+        private final byte[] summary;
+
+        /**
+         * Constructor.
+         * @param size The size of the .sb2 file.
+         * @param modified The modification time of the .sb2 file.
+         * @param limits The limits the .sb2 file was read with.
+         * @param hash The hash of the .sb2 file's contents.
+         * @param summary The encoded ProjectSummary.
+         */
+        Entry(long size, long modified, ProjectLimits limits, byte[] hash, byte[] summary) {
+            this.size = size;
+            this.modified = modified;
+            this.limits = limits;
+            this.hash = hash;
+            this.summary = summary;
+        }
+
+        /**
+         * Roughly how many bytes this entry takes up.
+         * @param key The entry's key.
+         * @return The size estimate.
+         */
+        long weight(String key) {
+            return ENTRY_OVERHEAD + LIMITS_SIZE + 2L * key.length() + hash.length + summary.length;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+import java.util.Arrays;
+import org.json.JSONArray;
+
+/**
+ * A compact, immutable copy of a script's blocks.  Blocks are stored in
+ * pre-order as opcode ids from {@code ScriptSpecs.getOpcodeId}.  For every
+ * block the tree also stores the index just past the blocks nested inside
+ * it, so the blocks inside a C-block like {@code doIf} or {@code doForever}
+ * are the range {@code (i, getSubtreeEnd(i))}.  Built once per script; all
+ * analysis runs over the two primitive arrays without touching org.json.
+ * <p>
+ * A tree holds either the stack blocks only, as Scatt has always counted
+ * them, or every block, with the reporters given as arguments nested
+ * inside the block they are given to.  Both are built in one pass with an
+ * explicit stack instead of recursion, so deeply nested scripts cannot
+ * overflow the thread's stack.
+ * @version 1.0
+ * @author agent
+ */
+public final class BlockTree {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final BlockTree EMPTY = new BlockTree(new short[0], new int[0]);
+    private final short[] opcodes;
+    private final int[] subtreeEnds;
+
+    /**
+     * Constructor.  The arrays are used as they are, not copied.
+     * @param opcodes Opcode ids in pre-order.
+     * @param subtreeEnds For each block, the index just past its nested blocks.
+     */
+    private BlockTree(short[] opcodes, int[] subtreeEnds) {
+        this.opcodes = opcodes;
+        this.subtreeEnds = subtreeEnds;
+    }
+
+    /**
+     * Build a tree from a JSONArray of block tuples, which is how scripts are
+     * represented in the project.json files inside .sb2 files.  Nested
+     * blocks are followed the way {@code ScriptSpecs.getNestedBlockTupleArrayIndexes}
+     * describes.
+     * @param blocks The JSONArray of block tuples.  May be null.
+     * @return The tree.
+     */
+    public static BlockTree fromBlocks(JSONArray blocks) {
+        return fromBlocks(blocks, false);
+    }
+
+    /**
+     * Build a tree from a JSONArray of block tuples, optionally with every
+     * block in it.  With {@code allBlocks} the tree also holds the reporter
+     * blocks given as arguments, like {@code +} inside {@code forward:}, and
+     * the stacks of every C-block, including ones like {@code doForeverIf}
+     * that {@code ScriptSpecs.getNestedBlockTupleArrayIndexes} does not
+     * list.  Which arguments hold reporters and which hold stacks comes from
+     * {@code ScriptSpecs.getArgumentKinds}, so the names and defaults of a
+     * {@code procDef}'s parameters are not taken for blocks.
+     * <p>
+     * The arguments of a block missing from that table, such as an
+     * extension's block, are guessed from their shape: an array starting
+     * with a string is a reporter and an array of arrays is a stack.  The
+     * guess is wrong for a literal list of strings given to such a block,
+     * which is counted as a reporter named by its first string.
+     * @param blocks The JSONArray of block tuples.  May be null.
+     * @param allBlocks Whether to include argument reporters and every stack.
+     * @return The tree.
+     */
+    public static BlockTree fromBlocks(JSONArray blocks, boolean allBlocks) {
+        if (blocks == null || blocks.length() == 0) {
+            return EMPTY;
+        }
+        Builder builder = new Builder(allBlocks);
+        builder.addBlocks(blocks);
+        return builder.build();
+    }
+
+    /**
+     * The number of blocks in the tree.
+     * @return the number of blocks.
+     */
+    public int size() {
+        return opcodes.length;
+    }
+
+    /**
+     * The opcode id of a block.
+     * @param index The pre-order index of the block.
+     * @return the opcode id.  See {@code ScriptSpecs.getOpcodeId}.
+     */
+    public int getOpcodeId(int index) {
+        return opcodes[index];
+    }
+
+    /**
+     * The index just past the last block nested inside a block.  A block with
+     * nothing nested inside has {@code getSubtreeEnd(i) == i + 1}.
+     * @param index The pre-order index of the block.
+     * @return the end of the block's subtree.
+     */
+    public int getSubtreeEnd(int index) {
+        return subtreeEnds[index];
+    }
+
+    /**
+     * Add the number of blocks of each category to {@code blocksByCategory}.
+     * @param blocksByCategory Array indexed like {@code ScriptSpecs.getCategories}.
+     */
+    public void sumBlocksByCategory(int[] blocksByCategory) {
+        for (short opcode : opcodes) {
+            blocksByCategory[ScriptSpecs.getCategoryOfOpcodeId(opcode)]++;
+        }
+    }
+
+    /**
+     * Appends blocks in pre-order into growing arrays.  The blocks still to
+     * visit are kept on a stack of frames.  A list frame walks an array of
+     * block tuples; a block frame walks the arguments of one block, by the
+     * kinds {@code ScriptSpecs} gives them, and closes its subtree when it
+     * is done.
+     */
+    private static class Builder {
+        private final boolean allBlocks;
+        private short[] opcodes = new short[INITIAL_CAPACITY];
+        private int[] subtreeEnds = new int[INITIAL_CAPACITY];
+        private int size = 0;
+        private JSONArray[] frameArrays = new JSONArray[INITIAL_CAPACITY];
+        private String[] frameKinds = new String[INITIAL_CAPACITY];
+        private int[] framePositions = new int[INITIAL_CAPACITY];
+        private int[] frameBlocks = new int[INITIAL_CAPACITY];
+        private int frameCount = 0;
+
+        /**
+         * Constructor.
+         * @param allBlocks Whether to include argument reporters and every
+         *     stack.
+         */
+        Builder(boolean allBlocks) {
+            this.allBlocks = allBlocks;
+        }
+
+        /**
+         * Append a JSONArray of block tuples and everything nested in them.
+         * Entries that are not block tuples are ignored.
+         * @param blocks The block tuples.
+         */
+        void addBlocks(JSONArray blocks) {
+            pushFrame(blocks, null, -1);
+            while (frameCount > 0) {
+                int top = frameCount - 1;
+                JSONArray array = frameArrays[top];
+                int position = framePositions[top]++;
+                int block = frameBlocks[top];
+                if (block < 0) {
+                    if (position >= array.length()) {
+                        frameCount--;
+                    } else if (array.optJSONArray(position) != null) {
+                        addBlock(array.optJSONArray(position));
+                    }
+                    continue;
+                }
+                String kinds = frameKinds[top];
+                if (position + 1 >= array.length()
+                        || kinds != null && position >= kinds.length()
+                        && kinds.indexOf(ScriptSpecs.REPEAT_ARGUMENT) < 0) {
+                    subtreeEnds[block] = size;
+                    frameCount--;
+                    continue;
+                }
+                char kind = ScriptSpecs.getArgumentKind(kinds, position);
+                if (kind == ScriptSpecs.FIXED_ARGUMENT) {
+                    continue;
+                }
+                JSONArray argument = array.optJSONArray(position + 1);
+                if (argument == null || argument.length() == 0) {
+                    continue;
+                }
+                boolean reporter = argument.opt(0) instanceof String;
+                if (kind == ScriptSpecs.STACK_ARGUMENT
+                        || kind == ScriptSpecs.UNKNOWN_ARGUMENT && !reporter) {
+                    pushFrame(argument, null, -1);
+                } else if (reporter) {
+                    addBlock(argument);
+                }
+            }
+        }
+
+        /**
+         * Append a block tuple, and push a frame to visit what is nested in
+         * it.
+         * @param block The block tuple.
+         */
+        private void addBlock(JSONArray block) {
+            String opcode = block.optString(0);
+            int opcodeId = ScriptSpecs.getOpcodeId(opcode);
+            int index = size++;
+            if (index == opcodes.length) {
+                opcodes = Arrays.copyOf(opcodes, index * 2);
+                subtreeEnds = Arrays.copyOf(subtreeEnds, index * 2);
+            }
+            opcodes[index] = (short) opcodeId;
+            String kinds;
+            if (!allBlocks) {
+                kinds = ScriptSpecs.getNestedArgumentKinds(opcodeId);
+            } else {
+                kinds = ScriptSpecs.getArgumentKinds(opcode);
+            }
+            pushFrame(block, kinds, index);
+        }
+
+        /**
+         * Push a frame.
+         * @param array The block tuples, or the block, to walk.
+         * @param kinds For a block frame, the kinds of the block's arguments,
+         *     or null to guess them.
+         * @param block For a block frame, the index of the block, else -1.
+         */
+        private void pushFrame(JSONArray array, String kinds, int block) {
+            if (frameCount == frameArrays.length) {
+                frameArrays = Arrays.copyOf(frameArrays, frameCount * 2);
+                frameKinds = Arrays.copyOf(frameKinds, frameCount * 2);
+                framePositions = Arrays.copyOf(framePositions, frameCount * 2);
+                frameBlocks = Arrays.copyOf(frameBlocks, frameCount * 2);
+            }
+            frameArrays[frameCount] = array;
+            frameKinds[frameCount] = kinds;
+            framePositions[frameCount] = 0;
+            frameBlocks[frameCount] = block;
+            frameCount++;
+        }
+
+        /**
+         * Finish building.
+         * @return The tree.
+         */
+        BlockTree build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            return new BlockTree(Arrays.copyOf(opcodes, size), Arrays.copyOf(subtreeEnds, size));
+        }
+    }
+}
@@ -0,0 +1,171 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The distribution of a count, such as script length, kept as the number of
+ * times each value was seen.  Most counts in Scratch projects are small, so
+ * small values are tallied in an array and the rare large ones in a sorted
+ * map.  Either way the distribution is exact, its size grows with the
+ * number of different large values rather than with the largest value, and
+ * two distributions merge by adding their tallies: each thread can fill its
+ * own and they can be merged at the end without locks.
+ * @version 1.0
+ * @author agent
+ */
+public class CountDistribution {
+    private static final int INITIAL_SIZE = 64;
+    private static final int DENSE_LIMIT = 4096;
+    private static final double RANK_TOLERANCE = 1e-9;
+    private long[] tallies = new long[INITIAL_SIZE];
+    private final TreeMap<Integer, Long> sparseTallies = new TreeMap<>();
+    private long count = 0;
+    private long sum = 0;
+    private int max = -1;
+
+    /**
+     * Record one value.
+     * @param value The value, not negative.
+     */
+    public void add(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative count " + value);
+        }
+        addTally(value, 1);
+        count++;
+        sum += value;
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Add the values recorded by another distribution to this one.
+     * @param other The other distribution, which is not changed.
+     */
+    public void merge(CountDistribution other) {
+        for (int i = 0; i < other.tallies.length; i++) {
+            if (other.tallies[i] != 0) {
+                addTally(i, other.tallies[i]);
+            }
+        }
+        for (Map.Entry<Integer, Long> tally : other.sparseTallies.entrySet()) {
+            addTally(tally.getKey(), tally.getValue());
+        }
+        count += other.count;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * The number of values recorded.
+     * @return The number of values.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * The total of the values recorded.
+     * @return The total.
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * The mean of the values recorded.
+     * @return The mean, or 0 if there are none.
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * The largest value recorded.
+     * @return The largest value, or 0 if there are none.
+     */
+    public int getMax() {
+        return Math.max(max, 0);
+    }
+
+    /**
+     * The median of the values recorded.
+     * @return The median, or 0 if there are none.
+     */
+    public int getMedian() {
+        return getPercentile(50);
+    }
+
+    /**
+     * A percentile of the values recorded, by the nearest rank method: the
+     * smallest value that at least {@code percent} percent of the values are
+     * less than or equal to.  The rank is worked out so that rounding
+     * cannot push a whole rank, like 7 for 7 percent of 100 values, up to
+     * the next one.
+     * @param percent The percentile, more than 0 and at most 100.
+     * @return The value, or 0 if there are none.
+     */
+    public int getPercentile(double percent) {
+        if (percent <= 0 || percent > 100) {
+            throw new IllegalArgumentException("Percentile " + percent);
+        }
+        long rank = Math.max(1, (long) Math.ceil(percent * count / 100 - RANK_TOLERANCE));
+        long seen = 0;
+        for (int i = 0; i < tallies.length; i++) {
+            seen += tallies[i];
+            if (seen >= rank && seen > 0) {
+                return i;
+            }
+        }
+        for (Map.Entry<Integer, Long> tally : sparseTallies.entrySet()) {
+            seen += tally.getValue();
+            if (seen >= rank) {
+                return tally.getKey();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * How many values fall in each power of two bucket: bucket 0 is the
+     * value 0, and bucket b is the values from 2^(b-1) to 2^b - 1.
+     * @return The tallies of the buckets, up to the one holding the largest
+     *     value.
+     */
+    public long[] getPowerOfTwoBuckets() {
+        long[] buckets = new long[getBucket(getMax()) + 1];
+        for (int i = 0; i <= max && i < tallies.length; i++) {
+            buckets[getBucket(i)] += tallies[i];
+        }
+        for (Map.Entry<Integer, Long> tally : sparseTallies.entrySet()) {
+            buckets[getBucket(tally.getKey())] += tally.getValue();
+        }
+        return buckets;
+    }
+
+    /**
+     * Add to the tally of one value, in the array if it is small and in the
+     * map if not.
+     * @param value The value, not negative.
+     * @param times How many more times it was seen.
+     */
+    private void addTally(int value, long times) {
+        if (value >= DENSE_LIMIT) {
+            sparseTallies.merge(value, times, Long::sum);
+            return;
+        }
+        if (value >= tallies.length) {
+            tallies = Arrays.copyOf(tallies,
+                Math.min(DENSE_LIMIT, Math.max(value + 1, 2 * tallies.length)));
+        }
+        tallies[value] += times;
+    }
+
+    /**
+     * The power of two bucket a value falls in.
+     * @param value The value.
+     * @return The bucket.
+     */
+    static int getBucket(int value) {
+        return Integer.SIZE - Integer.numberOfLeadingZeros(value);
+    }
+}
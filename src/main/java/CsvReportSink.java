@@ -0,0 +1,172 @@
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+/**
+ * Writes the report as CSV with a header row and one row per script.  A
+ * project that could not be read, or that has no scripts to report, gets
+ * one row with the script columns left empty, so every project appears.
+ * Stage scripts have sprite 0 and no sprite name.  The flags choose rows
+ * and columns the way they choose lines of the text report:
+ * {@code STAGE_SCRIPTS} adds rows for stage scripts, {@code SCRIPT_LENGTHS}
+ * adds the length column and {@code SCRIPT_BYCATTOT} adds a column of block
+ * counts for each category.  Fields are quoted as RFC 4180 says.
+ * @version 1.0
+ * @author agent
+ */
+public class CsvReportSink implements ReportSink {
+    private final int whatToReport;
+    private final PrintWriter pw;
+    private final StringBuilder row = new StringBuilder();
+    private final int[] blocksByCat = new int[ScriptSpecs.getCategories().length];
+
+    /**
+     * Constructor.
+     * @param whatToReport Bit vector of {@code Reporter} flags.
+     * @param pw Where to write.
+     */
+    public CsvReportSink(int whatToReport, PrintWriter pw) {
+        this.whatToReport = whatToReport;
+        this.pw = pw;
+    }
+
+    @Override
+    public void begin(int projectCount) {
+        row.setLength(0);
+        row.append("project,name,error,sprite,sprite_name,script");
+        if (shouldReport(Reporter.SCRIPT_LENGTHS)) {
+            row.append(",length");
+        }
+        if (shouldReport(Reporter.SCRIPT_BYCATTOT)) {
+            for (String category : ScriptSpecs.getCategories()) {
+                row.append(',');
+                appendField(category);
+            }
+        }
+        endRow();
+    }
+
+    @Override
+    public void project(int projectNo, ProjectSummary project) {
+        int rows = 0;
+        if (project.getErrorMessage() == null) {
+            if (shouldReport(Reporter.STAGE_SCRIPTS)) {
+                for (int i = 0; i < project.getStageScriptCount(); i++) {
+                    script(projectNo, project, 0, i + 1, project.getStageScript(i));
+                    rows++;
+                }
+            }
+            for (int sprite = 0; sprite < project.getSpriteCount(); sprite++) {
+                for (int i = 0; i < project.getScriptCount(sprite); i++) {
+                    script(projectNo, project, sprite + 1, i + 1, project.getScript(sprite, i));
+                    rows++;
+                }
+            }
+        }
+        if (rows == 0) {
+            startRow(projectNo, project);
+            row.append(",,");
+            if (shouldReport(Reporter.SCRIPT_LENGTHS)) {
+                row.append(',');
+            }
+            if (shouldReport(Reporter.SCRIPT_BYCATTOT)) {
+                for (int i = 0; i < blocksByCat.length; i++) {
+                    row.append(',');
+                }
+            }
+            endRow();
+        }
+    }
+
+    @Override
+    public void end() {
+        pw.flush();
+    }
+
+    /**
+     * Write the row of one script.
+     * @param projectNo The number of the project.
+     * @param project The project.
+     * @param spriteNo The number of the sprite, or 0 for the stage.
+     * @param scriptNo The number of the script.
+     * @param analysis The script's analysis.
+     */
+    private void script(int projectNo, ProjectSummary project, int spriteNo, int scriptNo,
+                        ScriptAnalysis analysis) {
+        startRow(projectNo, project);
+        row.append(spriteNo).append(',');
+        if (spriteNo > 0) {
+            appendField(project.getSpriteName(spriteNo - 1));
+        }
+        row.append(',').append(scriptNo);
+        if (shouldReport(Reporter.SCRIPT_LENGTHS)) {
+            row.append(',').append(analysis.getLength());
+        }
+        if (shouldReport(Reporter.SCRIPT_BYCATTOT)) {
+            Arrays.fill(blocksByCat, 0);
+            analysis.addBlocksByCategory(blocksByCat);
+            for (int count : blocksByCat) {
+                row.append(',').append(count);
+            }
+        }
+        endRow();
+    }
+
+    /**
+     * Determine whether a flag is set.
+     * @param flag A Reporter flag.
+     * @return whether to report the thing indicated by the flag
+     */
+    private boolean shouldReport(int flag) {
+        return (whatToReport & flag) != 0;
+    }
+
+    /**
+     * Start a row with the project columns, up to and including the comma
+     * before the sprite column.
+     * @param projectNo The number of the project.
+     * @param project The project.
+     */
+    private void startRow(int projectNo, ProjectSummary project) {
+        row.setLength(0);
+        row.append(projectNo).append(',');
+        appendField(project.getName());
+        row.append(',');
+        if (project.getErrorMessage() != null) {
+            appendField(project.getErrorMessage());
+        }
+        row.append(',');
+    }
+
+    /**
+     * Append a text field, quoted if it needs to be.
+     * @param value The text.
+     */
+    private void appendField(String value) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            row.append(value);
+            return;
+        }
+        row.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                row.append('"');
+            }
+            row.append(c);
+        }
+        row.append('"');
+    }
+
+    /**
+     * Finish a row and write it.  Rows end with CRLF, as RFC 4180 says.
+     */
+    private void endRow() {
+        row.append("\r\n");
+        pw.append(row);
+    }
+}
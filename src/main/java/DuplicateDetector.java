@@ -0,0 +1,326 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds scripts that are the same, or nearly the same, in different
+ * projects, such as homework copied from another submission.  Projects are
+ * added as they are read, and each script is indexed by its
+ * {@code ScriptFingerprint} rather than compared with every other script:
+ * <ul>
+ * <li>Scripts with the same exact hash are grouped.
+ * <li>The first script of each group is indexed by bands of its MinHash
+ *     signature (locality sensitive hashing).  Scripts that share a band are
+ *     candidates, and a candidate pair is reported if the signatures say the
+ *     scripts are at least the threshold alike.
+ * </ul>
+ * Each script goes into one group and {@code BANDS} buckets, so the work
+ * grows with the number of scripts, not the number of pairs.  Short scripts,
+ * like a green flag hat and one block, are in nearly every project, so
+ * scripts shorter than the minimum length are left out.
+ * @version 1.0
+ * @author agent
+ */
+public class DuplicateDetector {
+    /**
+     * Default shortest script to look at.
+     */
+    public static final int DEFAULT_MIN_LENGTH = 5;
+    /**
+     * Default similarity at which scripts count as nearly the same.
+     */
+    public static final double DEFAULT_THRESHOLD = 0.8;
+    private static final int BANDS = 8;
+    private static final int ROWS = ScriptFingerprint.SIGNATURE_LENGTH / BANDS;
+
+    private final int minLength;
+    private final double threshold;
+    private final Map<Long, List<ScriptRef>> byExactHash = new LinkedHashMap<>();
+    private final Map<Long, List<ScriptRef>> byBand = new HashMap<>();
+    private int scriptCount = 0;
+
+    /**
+     * Constructor.
+     * @param minLength The shortest script to look at.
+     * @param threshold The similarity, from 0 to 1, at which scripts count
+     *     as nearly the same.
+     */
+    public DuplicateDetector(int minLength, double threshold) {
+        this.minLength = minLength;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Constructor with the default minimum length and threshold.
+     */
+    public DuplicateDetector() {
+        this(DEFAULT_MIN_LENGTH, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Add the scripts of a project.
+     * @param projectNo The number of the project in the report.
+     * @param project The project's summary.
+     */
+    public void add(int projectNo, ProjectSummary project) {
+        if (project.getErrorMessage() != null) {
+            return;
+        }
+        for (int i = 0; i < project.getStageScriptCount(); i++) {
+            add(new ScriptRef(projectNo, project.getName(), 0, 0, null, i + 1,
+                project.getStageScript(i)));
+        }
+        for (int sprite = 0; sprite < project.getSpriteCount(); sprite++) {
+            for (int i = 0; i < project.getScriptCount(sprite); i++) {
+                add(new ScriptRef(projectNo, project.getName(), sprite + 1,
+                    project.getAuthoringPosition(sprite) + 1, project.getSpriteName(sprite),
+                    i + 1, project.getScript(sprite, i)));
+            }
+        }
+    }
+
+    /**
+     * The groups of scripts that are exactly the same, with scripts from
+     * more than one project.
+     * @return The groups, each in the order the scripts were added.
+     */
+    public List<List<ScriptRef>> getSameScripts() {
+        List<List<ScriptRef>> groups = new ArrayList<>();
+        for (List<ScriptRef> group : byExactHash.values()) {
+            int lastProjectNo = group.get(group.size() - 1).projectNo;
+            if (group.size() > 1 && group.get(0).projectNo != lastProjectNo) {
+                groups.add(Collections.unmodifiableList(group));
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * The pairs of scripts in different projects that are nearly, but not
+     * exactly, the same.  Each script stands for its group of exact copies:
+     * two groups are paired if any of their scripts are in different
+     * projects, and the pair names scripts from different projects.
+     * @return The pairs, in the order their first scripts were added.
+     */
+    public List<SimilarPair> getSimilarScripts() {
+        Set<Long> seen = new HashSet<>();
+        List<SimilarPair> pairs = new ArrayList<>();
+        for (List<ScriptRef> bucket : byBand.values()) {
+            for (int i = 0; i < bucket.size(); i++) {
+                for (int j = i + 1; j < bucket.size(); j++) {
+                    ScriptRef first = bucket.get(i);
+                    ScriptRef second = bucket.get(j);
+                    if (!seen.add((long) first.index << 32 | second.index)) {
+                        continue;
+                    }
+                    if (first.projectNo == second.projectNo) {
+                        ScriptRef copy = findCopyElsewhere(second, first.projectNo);
+                        if (copy != null) {
+                            second = copy;
+                        } else {
+                            copy = findCopyElsewhere(first, second.projectNo);
+                            if (copy == null) {
+                                continue;
+                            }
+                            first = second;
+                            second = copy;
+                        }
+                    }
+                    double similarity = first.analysis.getFingerprint()
+                        .similarity(second.analysis.getFingerprint());
+                    if (similarity >= threshold) {
+                        pairs.add(new SimilarPair(first, second, similarity));
+                    }
+                }
+            }
+        }
+        pairs.sort(Comparator.comparingInt((SimilarPair pair) -> pair.first.index)
+            .thenComparingInt(pair -> pair.second.index));
+        return pairs;
+    }
+
+    /**
+     * The first exact copy of a script that is not in a given project.
+     * @param script The script, the first of its group.
+     * @param projectNo The project to avoid.
+     * @return The copy, or null if every copy is in that project.
+     */
+    private ScriptRef findCopyElsewhere(ScriptRef script, int projectNo) {
+        for (ScriptRef copy : byExactHash.get(script.analysis.getFingerprint().getExactHash())) {
+            if (copy.projectNo != projectNo) {
+                return copy;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Index one script.
+     * @param script The script.
+     */
+    private void add(ScriptRef script) {
+        if (script.analysis.getLength() < minLength) {
+            return;
+        }
+        script.index = scriptCount++;
+        ScriptFingerprint fingerprint = script.analysis.getFingerprint();
+        List<ScriptRef> group = byExactHash.computeIfAbsent(fingerprint.getExactHash(),
+            hash -> new ArrayList<>());
+        group.add(script);
+        if (group.size() > 1) {
+            return;
+        }
+        for (int band = 0; band < BANDS; band++) {
+            long key = band;
+            for (int row = band * ROWS; row < (band + 1) * ROWS; row++) {
+                key = ScriptFingerprint.mix(key ^ fingerprint.getSignature(row));
+            }
+            byBand.computeIfAbsent(key, k -> new ArrayList<>()).add(script);
+        }
+    }
+
+    /**
+     * Where a script is: its project, sprite and number.
+     */
+    public static final class ScriptRef {
+        private final int projectNo;
+        private final String projectName;
+        private final int spriteNo;
+        private final int authoredSpriteNo;
+        private final String spriteName;
+        private final int scriptNo;
+        private final ScriptAnalysis analysis;
+        private int index;
+
+        /**
+         * Constructor.
+         * @param projectNo The number of the project.
+         * @param projectName The name of the project.
+         * @param spriteNo The number of the sprite, or 0 for the stage.
+         * @param authoredSpriteNo The number of the sprite in the order the
+         *     sprites were made, or 0 for the stage.
+         * @param spriteName The name of the sprite, or null for the stage.
+         * @param scriptNo The number of the script.
+         * @param analysis The script's analysis.
+         */
+        private ScriptRef(int projectNo, String projectName, int spriteNo,
+                          int authoredSpriteNo, String spriteName, int scriptNo,
+                          ScriptAnalysis analysis) {
+            this.projectNo = projectNo;
+            this.projectName = projectName;
+            this.spriteNo = spriteNo;
+            this.authoredSpriteNo = authoredSpriteNo;
+            this.spriteName = spriteName;
+            this.scriptNo = scriptNo;
+            this.analysis = analysis;
+        }
+
+        /**
+         * The number of the project.
+         * @return The project number, from 1.
+         */
+        public int getProjectNo() {
+            return projectNo;
+        }
+
+        /**
+         * The name of the project.
+         * @return The project name.
+         */
+        public String getProjectName() {
+            return projectName;
+        }
+
+        /**
+         * The number of the sprite.
+         * @return The sprite number, from 1, or 0 for the stage.
+         */
+        public int getSpriteNo() {
+            return spriteNo;
+        }
+
+        /**
+         * The number of the sprite when sprites are counted in the order
+         * they were made.
+         * @return The sprite number, from 1, or 0 for the stage.
+         */
+        public int getAuthoredSpriteNo() {
+            return authoredSpriteNo;
+        }
+
+        /**
+         * The name of the sprite.
+         * @return The sprite name, or null for the stage.
+         */
+        public String getSpriteName() {
+            return spriteName;
+        }
+
+        /**
+         * The number of the script in its sprite or the stage.
+         * @return The script number, from 1.
+         */
+        public int getScriptNo() {
+            return scriptNo;
+        }
+
+        /**
+         * The analysis of the script.
+         * @return The analysis.
+         */
+        public ScriptAnalysis getAnalysis() {
+            return analysis;
+        }
+    }
+
+    /**
+     * Two scripts that are nearly the same.
+     */
+    public static final class SimilarPair {
+        private final ScriptRef first;
+        private final ScriptRef second;
+        private final double similarity;
+
+        /**
+         * Constructor.
+         * @param first The script added first.
+         * @param second The other script.
+         * @param similarity How alike they are, from 0 to 1.
+         */
+        private SimilarPair(ScriptRef first, ScriptRef second, double similarity) {
+            this.first = first;
+            this.second = second;
+            this.similarity = similarity;
+        }
+
+        /**
+         * The script added first.
+         * @return The first script.
+         */
+        public ScriptRef getFirst() {
+            return first;
+        }
+
+        /**
+         * The script added second.
+         * @return The second script.
+         */
+        public ScriptRef getSecond() {
+            return second;
+        }
+
+        /**
+         * How alike the scripts are, as estimated from their signatures.
+         * @return A number from 0 to 1.
+         */
+        public double getSimilarity() {
+            return similarity;
+        }
+    }
+}
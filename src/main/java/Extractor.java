@@ -1,15 +1,21 @@
-import java.util.zip.ZipFile;
-import java.util.zip.ZipEntry;
-import java.io.InputStreamReader;
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import org.json.JSONObject;
 
 /**
+ * Reads project.json out of .sb2 archives with {@code ZipEntryReader}, which
+ * closes each archive before returning, so reading thousands of projects
+ * holds no file open for long.
  * @version 1.0
  * @author B. Clint Hall
  * @author Chris Waldon
  */
 public class Extractor {
+    private static final String PROJECT_JSON = "project.json";
     /**
      * Unzip sb2 file and return project.json content as a string.
      * @param sb2Path Path to the sb2 file.
@@ -17,24 +23,94 @@ public class Extractor {
      * @return the contents of the Sb2's project.json file as a string
      */
     public static String getProjectJSON(String sb2Path) throws IOException {
-        // Thanks to Oracle for code structure:
-        // http://www.oracle.com/technetwork/articles/java/compress-1565076.html
-        ZipFile zipFile = new ZipFile(sb2Path);
-        ZipEntry entry = zipFile.getEntry("project.json");
-        if (entry == null) {
-            return null;
+        ZipEntryReader zip = ZipEntryReader.forThread();
+        try {
+            if (!zip.read(new File(sb2Path), PROJECT_JSON)) {
+                return null;
+            }
+            return new String(zip.getBytes(), 0, zip.getLength(), StandardCharsets.UTF_8);
+        } finally {
+            zip.release();
         }
-        try (BufferedReader input = new BufferedReader(
-            new InputStreamReader(
-                zipFile.getInputStream(entry)));) {
-            StringBuilder sb = new StringBuilder();
-            String line;
-            while ((line = input.readLine()) != null) {
-                sb.append(line).append("\n");
+    }
+    /**
+     * Unzip sb2 file and parse project.json straight from the inflated
+     * bytes, within the default limits.
+     * @param sb2Path Path to the sb2 file.
+     * @throws IOException if something goes wrong.
+     * @throws org.json.JSONException if project.json is not parcable json text.
+     * @return the pruned project.json, or null if the sb2 has no project.json
+     */
+    public static JSONObject getProjectJSONObject(String sb2Path) throws IOException {
+        return getProjectJSONObject(sb2Path, ProjectLimits.DEFAULT);
+    }
+    /**
+     * Unzip sb2 file and parse project.json straight from the inflated
+     * bytes, without making a string of the whole json text.  Only the parts
+     * of the project Scatt reports on are kept.  See {@code ProjectReader}.
+     * @param sb2Path Path to the sb2 file.
+     * @param limits The limits to enforce while inflating and parsing.
+     * @throws ProjectLimitException if the project is over a limit.
+     * @throws IOException if something goes wrong.
+     * @throws org.json.JSONException if project.json is not parcable json text.
+     * @return the pruned project.json, or null if the sb2 has no project.json
+     */
+    public static JSONObject getProjectJSONObject(String sb2Path, ProjectLimits limits)
+        throws IOException {
+        return getProjectJSONObject(sb2Path, limits, null);
+    }
+    /**
+     * Like {@code getProjectJSONObject(String, ProjectLimits)}, also adding
+     * the bytes of project.json to a digest while they are in memory, so a
+     * caller can tell later whether project.json changed without reading
+     * it again.
+     * @param sb2Path Path to the sb2 file.
+     * @param limits The limits to enforce while inflating and parsing.
+     * @param digest The digest to update, or null.
+     * @throws ProjectLimitException if the project is over a limit.
+     * @throws IOException if something goes wrong.
+     * @throws org.json.JSONException if project.json is not parcable json text.
+     * @return the pruned project.json, or null if the sb2 has no project.json
+     */
+    public static JSONObject getProjectJSONObject(String sb2Path, ProjectLimits limits,
+                                                  MessageDigest digest) throws IOException {
+        ZipEntryReader zip = ZipEntryReader.forThread();
+        try {
+            if (!zip.read(new File(sb2Path), PROJECT_JSON, limits.getMaxBytes())) {
+                return null;
+            }
+            if (digest != null) {
+                digest.update(zip.getBytes(), 0, zip.getLength());
+            }
+            try (Reader reader = new InputStreamReader(zip.newInputStream(),
+                StandardCharsets.UTF_8)) {
+                return ProjectReader.read(reader, limits);
+            }
+        } finally {
+            zip.release();
+        }
+    }
+    /**
+     * Add the bytes of an sb2 file's project.json to a digest, without
+     * parsing them.  Only the archive's directory and project.json are read.
+     * @param sb2Path Path to the sb2 file.
+     * @param limits The limits to enforce while inflating.
+     * @param digest The digest to update.
+     * @throws ProjectLimitException if project.json is over the size limit.
+     * @throws IOException if something goes wrong.
+     * @return whether the sb2 has a project.json
+     */
+    public static boolean digestProjectJSON(String sb2Path, ProjectLimits limits,
+                                            MessageDigest digest) throws IOException {
+        ZipEntryReader zip = ZipEntryReader.forThread();
+        try {
+            if (!zip.read(new File(sb2Path), PROJECT_JSON, limits.getMaxBytes())) {
+                return false;
             }
-            return sb.toString();
-        } catch (IOException e) {
-            throw e;
+            digest.update(zip.getBytes(), 0, zip.getLength());
+            return true;
+        } finally {
+            zip.release();
         }
     }
 }
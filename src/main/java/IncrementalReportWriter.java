@@ -0,0 +1,368 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes a report file again after some projects have changed, formatting
+ * only the sections of the projects that changed.  A side index next to the
+ * report remembers where each project's section is and a fingerprint of
+ * what it was made from.  Sections whose fingerprint has not changed are
+ * copied from the old report with {@code FileChannel.transferTo}, or left
+ * where they are when every changed section is the same length as before.
+ * The file written is always byte for byte what {@code Reporter} would have
+ * written from scratch.
+ * @version 1.0
+ * @author agent
+ */
+public class IncrementalReportWriter {
+    /**
+     * Added to the report's file name to name its index.
+     */
+    public static final String INDEX_SUFFIX = ".index";
+    private static final long MAGIC = 0x5343415454494458L;
+    private static final int VERSION = 1;
+    private static final String FINGERPRINT_ALGORITHM = "SHA-256";
+
+    private final Reporter reporter;
+    private final File reportFile;
+    private final File indexFile;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private final PrintWriter bufferWriter =
+        new PrintWriter(new OutputStreamWriter(buffer, Reporter.CHARSET));
+    private final MessageDigest digest;
+    private Index index = null;
+    private int sectionsFormatted = 0;
+
+    /**
+     * Constructor.
+     * @param reporter The Reporter that formats the report.
+     * @param reportFile The report file.
+     */
+    public IncrementalReportWriter(Reporter reporter, File reportFile) {
+        this.reporter = reporter;
+        this.reportFile = reportFile;
+        this.indexFile = new File(reportFile.getPath() + INDEX_SUFFIX);
+        try {
+            digest = MessageDigest.getInstance(FINGERPRINT_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Bring the report up to date.  If the report or its index is missing,
+     * or the report has been changed by anything else, it is written from
+     * scratch.
+     * @param summaries The projects to report on, in report order.
+     * @throws IOException if the report cannot be written.
+     */
+    public void write(List<ProjectSummary> summaries) throws IOException {
+        int count = summaries.size();
+        byte[] header = format(-1, count, null);
+        byte[][] fingerprints = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            fingerprints[i] = fingerprint(i + 1, summaries.get(i));
+        }
+        Index old = getIndex();
+        byte[][] sections = new byte[count][];
+        int[] lengths = new int[count];
+        boolean inPlace = old != null && count == old.lengths.length
+            && Arrays.equals(header, old.header);
+        sectionsFormatted = 0;
+        for (int i = 0; i < count; i++) {
+            if (old != null && i < old.lengths.length
+                && Arrays.equals(fingerprints[i], old.fingerprints[i])) {
+                lengths[i] = old.lengths[i];
+            } else {
+                sections[i] = format(i + 1, count, summaries.get(i));
+                lengths[i] = sections[i].length;
+                sectionsFormatted++;
+                inPlace &= old != null && i < old.lengths.length && lengths[i] == old.lengths[i];
+            }
+        }
+        index = null;
+        if (old == null) {
+            writeAll(header, sections);
+        } else if (inPlace) {
+            patch(old, sections);
+        } else {
+            splice(old, header, sections);
+        }
+        index = new Index(reporter.getWhatToReport(), reportFile.length(),
+            reportFile.lastModified(), header, lengths, fingerprints);
+        saveIndex(index);
+    }
+
+    /**
+     * The number of project sections formatted by the last {@code write}.
+     * @return the count.
+     */
+    int getSectionsFormatted() {
+        return sectionsFormatted;
+    }
+
+    /**
+     * Format the header or one project section.
+     * @param projectNo The number of the project, or -1 for the header.
+     * @param projectCount The number of projects in the report.
+     * @param project The project, or null for the header.
+     * @return The bytes of that part of the report.
+     */
+    private byte[] format(int projectNo, int projectCount, ProjectSummary project) {
+        buffer.reset();
+        if (project == null) {
+            reporter.reportHeader(projectCount, bufferWriter);
+        } else {
+            reporter.reportProject(projectNo, bufferWriter, project);
+        }
+        bufferWriter.flush();
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Fingerprint everything a project section is made from.
+     * @param projectNo The number of the project.
+     * @param project The project.
+     * @return The fingerprint.
+     * @throws IOException if the summary cannot be written.
+     */
+    private byte[] fingerprint(int projectNo, ProjectSummary project) throws IOException {
+        buffer.reset();
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeInt(projectNo);
+        project.writeTo(out);
+        out.flush();
+        return digest.digest(buffer.toByteArray());
+    }
+
+    /**
+     * Write the whole report.
+     * @param header The header.
+     * @param sections Every section.
+     * @throws IOException if writing fails.
+     */
+    private void writeAll(byte[] header, byte[][] sections) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(reportFile))) {
+            out.write(header);
+            for (byte[] section : sections) {
+                out.write(section);
+            }
+        }
+    }
+
+    /**
+     * Overwrite changed sections where they are.  Only possible when every
+     * section is the same length as before.
+     * @param old The index of the report as it is.
+     * @param sections The changed sections, null where unchanged.
+     * @throws IOException if writing fails.
+     */
+    private void patch(Index old, byte[][] sections) throws IOException {
+        try (FileChannel channel = FileChannel.open(reportFile.toPath(),
+                StandardOpenOption.WRITE)) {
+            long offset = old.header.length;
+            for (int i = 0; i < sections.length; i++) {
+                if (sections[i] != null) {
+                    ByteBuffer bytes = ByteBuffer.wrap(sections[i]);
+                    long position = offset;
+                    while (bytes.hasRemaining()) {
+                        position += channel.write(bytes, position);
+                    }
+                }
+                offset += old.lengths[i];
+            }
+        }
+    }
+
+    /**
+     * Write a new report from the changed sections and the unchanged
+     * sections of the old one, then put it in place of the old one.
+     * @param old The index of the report as it is.
+     * @param header The new header.
+     * @param sections The changed sections, null where unchanged.
+     * @throws IOException if writing fails.
+     */
+    private void splice(Index old, byte[] header, byte[][] sections) throws IOException {
+        File temp = new File(reportFile.getPath() + ".tmp");
+        try (FileChannel in = FileChannel.open(reportFile.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                 StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(out, header);
+            long offset = old.header.length;
+            for (int i = 0; i < sections.length; i++) {
+                if (sections[i] != null) {
+                    writeFully(out, sections[i]);
+                } else {
+                    transferFully(in, offset, old.lengths[i], out);
+                }
+                if (i < old.lengths.length) {
+                    offset += old.lengths[i];
+                }
+            }
+        }
+        try {
+            Files.move(temp.toPath(), reportFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), reportFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Write all of an array to a channel.
+     * @param out The channel.
+     * @param bytes The bytes.
+     * @throws IOException if writing fails.
+     */
+    private static void writeFully(FileChannel out, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    /**
+     * Copy part of one channel to the end of another.
+     * @param in The channel to copy from.
+     * @param position Where to start copying.
+     * @param count How many bytes to copy.
+     * @param out The channel to copy to.
+     * @throws IOException if the old report is shorter than its index says.
+     */
+    private static void transferFully(FileChannel in, long position, long count,
+                                      FileChannel out) throws IOException {
+        while (count > 0) {
+            long transferred = in.transferTo(position, count, out);
+            if (transferred <= 0) {
+                throw new IOException("Report is shorter than its index");
+            }
+            position += transferred;
+            count -= transferred;
+        }
+    }
+
+    /**
+     * The index of the report as it is, if it can be trusted.
+     * @return The index, or null if the report must be written from scratch.
+     */
+    private Index getIndex() {
+        if (index == null) {
+            index = loadIndex();
+        }
+        if (index == null || index.flags != reporter.getWhatToReport()
+            || index.reportLength != reportFile.length()
+            || index.reportModified != reportFile.lastModified()) {
+            return null;
+        }
+        return index;
+    }
+
+    /**
+     * Read the index file.
+     * @return The index, or null if there is none that can be read.
+     */
+    private Index loadIndex() {
+        if (!indexFile.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readLong() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            int flags = in.readInt();
+            long reportLength = in.readLong();
+            long reportModified = in.readLong();
+            byte[] header = new byte[in.readInt()];
+            in.readFully(header);
+            int count = in.readInt();
+            int[] lengths = new int[count];
+            byte[][] fingerprints = new byte[count][];
+            for (int i = 0; i < count; i++) {
+                lengths[i] = in.readInt();
+                fingerprints[i] = new byte[in.readUnsignedByte()];
+                in.readFully(fingerprints[i]);
+            }
+            return new Index(flags, reportLength, reportModified, header, lengths,
+                fingerprints);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Write the index file.
+     * @param index The index.
+     * @throws IOException if writing fails.
+     */
+    private void saveIndex(Index index) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(indexFile)))) {
+            out.writeLong(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(index.flags);
+            out.writeLong(index.reportLength);
+            out.writeLong(index.reportModified);
+            out.writeInt(index.header.length);
+            out.write(index.header);
+            out.writeInt(index.lengths.length);
+            for (int i = 0; i < index.lengths.length; i++) {
+                out.writeInt(index.lengths[i]);
+                out.writeByte(index.fingerprints[i].length);
+                out.write(index.fingerprints[i]);
+            }
+        }
+    }
+
+    /**
+     * Where the sections of a report are and what they were made from.  The
+     * first section starts right after the header, and each of the others
+     * right after the one before it.
+     */
+    private static class Index {
+        private final int flags;
+        private final long reportLength;
+        private final long reportModified;
+        private final byte[] header;
+        private final int[] lengths;
+        private final byte[][] fingerprints;
+
+        /**
+         * Constructor.
+         * @param flags The Reporter flags the report was written with.
+         * @param reportLength The length of the report file.
+         * @param reportModified The modification time of the report file.
+         * @param header The header of the report.
+         * @param lengths The length of each project section.
+         * @param fingerprints The fingerprint of each project section.
+         */
+        Index(int flags, long reportLength, long reportModified, byte[] header, int[] lengths,
+              byte[][] fingerprints) {
+            this.flags = flags;
+            this.reportLength = reportLength;
+            this.reportModified = reportModified;
+            this.header = header;
+            this.lengths = lengths;
+            this.fingerprints = fingerprints;
+        }
+    }
+}
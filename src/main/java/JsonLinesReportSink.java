@@ -0,0 +1,193 @@
+import org.json.JSONObject;
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+/**
+ * Writes the report as JSON Lines: one JSON object per line, for the
+ * report, each project, each sprite and each script.  Every record has a
+ * {@code type} and the numbers that place it in the report, so records can
+ * be read on their own.  The flags choose records and fields the way they
+ * choose lines of the text report:
+ * <ul>
+ * <li>{@code NUM_PROJECTS}: a {@code report} record with {@code projects}.
+ * <li>{@code PROJECT_HEADERS}, {@code SPRITES_PER_PROJECT},
+ *     {@code STAGE_SCRIPTS_BYCATTOT}: a {@code project} record with
+ *     {@code name}, {@code sprites} and {@code stageBlocksByCategory}.  A
+ *     project that could not be read always gets one, with its {@code error}.
+ * <li>{@code SPRITE_HEADERS}, {@code SCRIPTS_PER_SPRITE}: a {@code sprite}
+ *     record with {@code name} and {@code scripts}.
+ * <li>{@code SCRIPT_HEADERS}, {@code SCRIPT_LENGTHS}, {@code SCRIPT_BYCATTOT}:
+ *     a {@code script} record for each sprite script, with {@code length} and
+ *     {@code blocksByCategory}.  {@code STAGE_SCRIPTS} adds records for
+ *     stage scripts, which have {@code "stage":true} instead of a sprite.
+ * </ul>
+ * Blocks by category leave out categories with no blocks.
+ * @version 1.0
+ * @author agent
+ */
+public class JsonLinesReportSink implements ReportSink {
+    private static final int PROJECT_RECORD = Reporter.PROJECT_HEADERS
+        | Reporter.SPRITES_PER_PROJECT | Reporter.STAGE_SCRIPTS_BYCATTOT;
+    private static final int SPRITE_RECORD = Reporter.SPRITE_HEADERS
+        | Reporter.SCRIPTS_PER_SPRITE;
+    private static final int SCRIPT_RECORD = Reporter.SCRIPT_HEADERS
+        | Reporter.SCRIPT_LENGTHS | Reporter.SCRIPT_BYCATTOT;
+    private final int whatToReport;
+    private final PrintWriter pw;
+    private final StringBuilder line = new StringBuilder();
+    private final int[] blocksByCat = new int[ScriptSpecs.getCategories().length];
+
+    /**
+     * Constructor.
+     * @param whatToReport Bit vector of {@code Reporter} flags.
+     * @param pw Where to write.
+     */
+    public JsonLinesReportSink(int whatToReport, PrintWriter pw) {
+        this.whatToReport = whatToReport;
+        this.pw = pw;
+    }
+
+    @Override
+    public void begin(int projectCount) {
+        if (shouldReport(Reporter.NUM_PROJECTS)) {
+            startRecord("report");
+            line.append(",\"projects\":").append(projectCount);
+            endRecord();
+        }
+    }
+
+    @Override
+    public void project(int projectNo, ProjectSummary project) {
+        String errorMessage = project.getErrorMessage();
+        if (shouldReport(PROJECT_RECORD) || errorMessage != null) {
+            startRecord("project");
+            line.append(",\"project\":").append(projectNo);
+            appendString("name", project.getName());
+            if (errorMessage != null) {
+                appendString("error", errorMessage);
+            } else {
+                if (shouldReport(Reporter.SPRITES_PER_PROJECT)) {
+                    line.append(",\"sprites\":").append(project.getSpriteCount());
+                }
+                if (shouldReport(Reporter.STAGE_SCRIPTS_BYCATTOT)) {
+                    appendBlocksByCat("stageBlocksByCategory",
+                        project.sumStageBlocksByCategory());
+                }
+            }
+            endRecord();
+        }
+        if (errorMessage != null) {
+            return;
+        }
+        if (shouldReport(Reporter.STAGE_SCRIPTS) && shouldReport(SCRIPT_RECORD)) {
+            for (int i = 0; i < project.getStageScriptCount(); i++) {
+                script(projectNo, 0, i + 1, project.getStageScript(i));
+            }
+        }
+        for (int sprite = 0; sprite < project.getSpriteCount(); sprite++) {
+            if (shouldReport(SPRITE_RECORD)) {
+                startRecord("sprite");
+                line.append(",\"project\":").append(projectNo)
+                    .append(",\"sprite\":").append(sprite + 1);
+                appendString("name", project.getSpriteName(sprite));
+                if (shouldReport(Reporter.SCRIPTS_PER_SPRITE)) {
+                    line.append(",\"scripts\":").append(project.getScriptCount(sprite));
+                }
+                endRecord();
+            }
+            if (shouldReport(SCRIPT_RECORD)) {
+                for (int i = 0; i < project.getScriptCount(sprite); i++) {
+                    script(projectNo, sprite + 1, i + 1, project.getScript(sprite, i));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void end() {
+        pw.flush();
+    }
+
+    /**
+     * Write a script record.
+     * @param projectNo The number of the project.
+     * @param spriteNo The number of the sprite, or 0 for the stage.
+     * @param scriptNo The number of the script.
+     * @param analysis The script's analysis.
+     */
+    private void script(int projectNo, int spriteNo, int scriptNo, ScriptAnalysis analysis) {
+        startRecord("script");
+        line.append(",\"project\":").append(projectNo);
+        if (spriteNo == 0) {
+            line.append(",\"stage\":true");
+        } else {
+            line.append(",\"sprite\":").append(spriteNo);
+        }
+        line.append(",\"script\":").append(scriptNo);
+        if (shouldReport(Reporter.SCRIPT_LENGTHS)) {
+            line.append(",\"length\":").append(analysis.getLength());
+        }
+        if (shouldReport(Reporter.SCRIPT_BYCATTOT)) {
+            Arrays.fill(blocksByCat, 0);
+            analysis.addBlocksByCategory(blocksByCat);
+            appendBlocksByCat("blocksByCategory", blocksByCat);
+        }
+        endRecord();
+    }
+
+    /**
+     * Determine whether any of some flags is set.
+     * @param flags Reporter flags.
+     * @return whether to report the things indicated by the flags
+     */
+    private boolean shouldReport(int flags) {
+        return (whatToReport & flags) != 0;
+    }
+
+    /**
+     * Start a record.
+     * @param type The type of the record.
+     */
+    private void startRecord(String type) {
+        line.setLength(0);
+        line.append("{\"type\":\"").append(type).append('"');
+    }
+
+    /**
+     * Append a string field.
+     * @param key The field name.
+     * @param value The value.
+     */
+    private void appendString(String key, String value) {
+        line.append(",\"").append(key).append("\":").append(JSONObject.quote(value));
+    }
+
+    /**
+     * Append an object of block counts by category, leaving out zeros.
+     * @param key The field name.
+     * @param blocksByCat Block counts indexed like {@code ScriptSpecs.getCategories}.
+     */
+    private void appendBlocksByCat(String key, int[] blocksByCat) {
+        String[] cats = ScriptSpecs.getCategories();
+        line.append(",\"").append(key).append("\":{");
+        boolean any = false;
+        for (int i = 0; i < cats.length; i++) {
+            if (blocksByCat[i] > 0) {
+                if (any) {
+                    line.append(',');
+                }
+                line.append(JSONObject.quote(cats[i])).append(':').append(blocksByCat[i]);
+                any = true;
+            }
+        }
+        line.append('}');
+    }
+
+    /**
+     * Finish a record and write it.
+     */
+    private void endRecord() {
+        line.append("}\n");
+        pw.append(line);
+    }
+}
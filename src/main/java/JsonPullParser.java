@@ -0,0 +1,424 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import org.json.JSONException;
+
+/**
+ * A small pull parser for json text.  Instead of building a tree like
+ * {@code org.json.JSONObject} does, it hands the caller one event at a time,
+ * so the caller decides what to keep and can skip everything else without
+ * building any objects.  Like org.json it accepts unquoted and single quoted
+ * strings, a trailing comma before a closing bracket or brace, a missing
+ * array element as a null and a {@code ;} between the fields of an object,
+ * and it reports malformed text with a {@code JSONException}.
+ * @version 1.0
+ * @author agent
+ */
+public class JsonPullParser {
+    /**
+     * The events the parser produces.
+     */
+    public enum Event {
+        START_OBJECT,
+        END_OBJECT,
+        START_ARRAY,
+        END_ARRAY,
+        FIELD_NAME,
+        STRING,
+        NUMBER,
+        TRUE,
+        FALSE,
+        NULL,
+        END_DOCUMENT
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int INITIAL_DEPTH = 32;
+    private static final int VALUE_EXPECTED = 0;
+    private static final int FIRST_IN_OBJECT = 1;
+    private static final int FIRST_IN_ARRAY = 2;
+    private static final int AFTER_VALUE = 3;
+    private static final int DONE = 4;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int pos = 0;
+    private int limit = 0;
+    private long consumed = 0;
+    private final StringBuilder text = new StringBuilder();
+    private boolean[] inObject = new boolean[INITIAL_DEPTH];
+    private int depth = 0;
+    private int maxDepth = Integer.MAX_VALUE;
+    private int state = VALUE_EXPECTED;
+    private boolean skipping = false;
+
+    /**
+     * Construct a parser reading json text from a Reader.  The parser does its
+     * own buffering.
+     * @param reader The source of the json text.
+     */
+    public JsonPullParser(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Limit how deeply objects and arrays may nest.  Going deeper, even in a
+     * value being skipped, throws an {@code UncheckedIOException} wrapping a
+     * {@code ProjectLimitException}.
+     * @param maxDepth The deepest nesting allowed.
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Move to the next event.
+     * @return The next event.  {@code END_DOCUMENT} once the top level value
+     *     is complete.  Anything after the top level value is ignored.
+     * @throws JSONException if the text is not json.
+     * @throws UncheckedIOException if the Reader fails.
+     */
+    public Event next() {
+        int c;
+        switch (state) {
+            case DONE:
+                return Event.END_DOCUMENT;
+            case FIRST_IN_OBJECT:
+                c = nextClean();
+                if (c == '}') {
+                    return pop(Event.END_OBJECT);
+                }
+                return readName(c);
+            case FIRST_IN_ARRAY:
+                c = nextClean();
+                if (c == ']') {
+                    return pop(Event.END_ARRAY);
+                }
+                return readElement(c);
+            case AFTER_VALUE:
+                if (depth == 0) {
+                    state = DONE;
+                    return Event.END_DOCUMENT;
+                }
+                c = nextClean();
+                boolean object = inObject[depth - 1];
+                if (c == ',' || c == ';' && object) {
+                    c = nextClean();
+                    if (c == '}' && object) {
+                        return pop(Event.END_OBJECT);
+                    } else if (c == ']' && !object) {
+                        return pop(Event.END_ARRAY);
+                    }
+                    return object ? readName(c) : readElement(c);
+                } else if (c == '}' && object) {
+                    return pop(Event.END_OBJECT);
+                } else if (c == ']' && !object) {
+                    return pop(Event.END_ARRAY);
+                }
+                throw syntaxError(object ? "Expected a ',' or '}'" : "Expected a ',' or ']'");
+            default:
+                return readValue(nextClean());
+        }
+    }
+
+    /**
+     * The text of the current event: the field name for {@code FIELD_NAME},
+     * the unescaped string for {@code STRING} and the literal for
+     * {@code NUMBER}.
+     * @return the text of the current event.
+     */
+    public String getText() {
+        return text.toString();
+    }
+
+    /**
+     * Whether the text of the current event equals a string.  Does not
+     * allocate.
+     * @param expected The string to compare against.
+     * @return whether the text of the current event equals {@code expected}.
+     */
+    public boolean textEquals(String expected) {
+        if (text.length() != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (text.charAt(i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The number of objects and arrays that are currently open.
+     * @return the nesting depth.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Skip the rest of a value.  Call this right after {@code next} returned
+     * the value's first event.  Scalars are already complete; for objects and
+     * arrays the parser moves past the matching end event without keeping
+     * any of the text inside.
+     * @param first The event that started the value.
+     * @throws JSONException if the text is not json.
+     */
+    public void skipValue(Event first) {
+        if (first != Event.START_OBJECT && first != Event.START_ARRAY) {
+            return;
+        }
+        int target = depth - 1;
+        skipping = true;
+        try {
+            while (depth > target) {
+                next();
+            }
+        } finally {
+            skipping = false;
+        }
+    }
+
+    /**
+     * Read a field name, and the colon after it.
+     * @param c The first character of the name.
+     * @return {@code FIELD_NAME}
+     */
+    private Event readName(int c) {
+        if (c == '"' || c == '\'') {
+            readString(c);
+        } else if (c == '}' || c == ']' || c == ',' || c == ':' || c == -1) {
+            throw syntaxError("Expected a field name");
+        } else {
+            readUnquoted(c);
+        }
+        if (nextClean() != ':') {
+            throw syntaxError("Expected a ':' after a key");
+        }
+        state = VALUE_EXPECTED;
+        return Event.FIELD_NAME;
+    }
+
+    /**
+     * Read the start of an element of an array.  Like org.json, a missing
+     * element, as in {@code [1,,2]}, is a null.
+     * @param c The first character of the element.
+     * @return The event for the element.
+     */
+    private Event readElement(int c) {
+        if (c != ',') {
+            return readValue(c);
+        }
+        pos--;
+        text.setLength(0);
+        text.append("null");
+        state = AFTER_VALUE;
+        return Event.NULL;
+    }
+
+    /**
+     * Read the start of a value.
+     * @param c The first character of the value.
+     * @return The event for the value.
+     */
+    private Event readValue(int c) {
+        switch (c) {
+            case '{':
+                push(true);
+                state = FIRST_IN_OBJECT;
+                return Event.START_OBJECT;
+            case '[':
+                push(false);
+                state = FIRST_IN_ARRAY;
+                return Event.START_ARRAY;
+            case '"':
+            case '\'':
+                readString(c);
+                state = AFTER_VALUE;
+                return Event.STRING;
+            case '}':
+            case ']':
+            case ',':
+            case ':':
+            case -1:
+                throw syntaxError("Missing value");
+            default:
+                state = AFTER_VALUE;
+                return readUnquoted(c);
+        }
+    }
+
+    /**
+     * Read a value that is not in quotes, the way org.json does: everything up
+     * to the next delimiter.
+     * @param first The first character.
+     * @return The event for the literal.
+     */
+    private Event readUnquoted(int first) {
+        text.setLength(0);
+        int c = first;
+        while (c >= ' ' && ",:]}/\\\"[{;=#".indexOf(c) < 0) {
+            text.append((char) c);
+            c = read();
+        }
+        if (c != -1) {
+            pos--;
+        }
+        while (text.length() > 0 && text.charAt(text.length() - 1) == ' ') {
+            text.setLength(text.length() - 1);
+        }
+        if (text.length() == 0) {
+            throw syntaxError("Missing value");
+        }
+        if (textEquals("true")) {
+            return Event.TRUE;
+        } else if (textEquals("false")) {
+            return Event.FALSE;
+        } else if (textEquals("null")) {
+            return Event.NULL;
+        }
+        char lead = text.charAt(0);
+        if ((lead >= '0' && lead <= '9') || lead == '-' || lead == '.') {
+            return Event.NUMBER;
+        }
+        return Event.STRING;
+    }
+
+    /**
+     * Read a quoted string into {@code text}, undoing escapes.  While skipping,
+     * the characters are only scanned.
+     * @param quote The quote character that opened the string.
+     */
+    private void readString(int quote) {
+        text.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == quote) {
+                return;
+            }
+            switch (c) {
+                case -1:
+                case '\n':
+                case '\r':
+                    throw syntaxError("Unterminated string");
+                case '\\':
+                    c = readEscape();
+                    break;
+                default:
+                    break;
+            }
+            if (!skipping) {
+                text.append((char) c);
+            }
+        }
+    }
+
+    /**
+     * Read the character after a backslash.
+     * @return The character the escape stands for.
+     */
+    private int readEscape() {
+        int c = read();
+        switch (c) {
+            case 'b':
+                return '\b';
+            case 't':
+                return '\t';
+            case 'n':
+                return '\n';
+            case 'f':
+                return '\f';
+            case 'r':
+                return '\r';
+            case 'u':
+                int code = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit < 0) {
+                        throw syntaxError("Illegal escape.");
+                    }
+                    code = code * 16 + digit;
+                }
+                return code;
+            case '"':
+            case '\'':
+            case '\\':
+            case '/':
+                return c;
+            default:
+                throw syntaxError("Illegal escape.");
+        }
+    }
+
+    /**
+     * Open an object or array.
+     * @param object Whether it is an object.
+     */
+    private void push(boolean object) {
+        if (depth == maxDepth) {
+            throw new UncheckedIOException(new ProjectLimitException(
+                "The json text is nested more than " + maxDepth + " deep."));
+        }
+        if (depth == inObject.length) {
+            boolean[] grown = new boolean[depth * 2];
+            System.arraycopy(inObject, 0, grown, 0, depth);
+            inObject = grown;
+        }
+        inObject[depth++] = object;
+    }
+
+    /**
+     * Close an object or array.
+     * @param event The end event to return.
+     * @return {@code event}
+     */
+    private Event pop(Event event) {
+        depth--;
+        state = AFTER_VALUE;
+        return event;
+    }
+
+    /**
+     * Read the next character that is not whitespace.
+     * @return The character, or -1 at the end of the text.
+     */
+    private int nextClean() {
+        int c;
+        do {
+            c = read();
+        } while (c != -1 && c <= ' ');
+        return c;
+    }
+
+    /**
+     * Read the next character.
+     * @return The character, or -1 at the end of the text.
+     */
+    private int read() {
+        if (pos == limit) {
+            consumed += limit;
+            pos = 0;
+            limit = 0;
+            try {
+                int count = reader.read(buffer, 0, buffer.length);
+                if (count <= 0) {
+                    return -1;
+                }
+                limit = count;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return buffer[pos++];
+    }
+
+    /**
+     * Make an exception describing a syntax error at the current position.
+     * @param message What went wrong.
+     * @return The exception.
+     */
+    private JSONException syntaxError(String message) {
+        return new JSONException(message + " at character " + (consumed + pos));
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * Hands each project to several sinks, so a report can be written in
+ * several formats in one pass over the projects.
+ * @version 1.0
+ * @author agent
+ */
+public class MultiReportSink implements ReportSink {
+    private final ReportSink[] sinks;
+
+    /**
+     * Constructor.
+     * @param sinks The sinks, told about each project in this order.
+     */
+    public MultiReportSink(ReportSink... sinks) {
+        this.sinks = sinks.clone();
+    }
+
+    @Override
+    public void begin(int projectCount) {
+        for (ReportSink sink : sinks) {
+            sink.begin(projectCount);
+        }
+    }
+
+    @Override
+    public void project(int projectNo, ProjectSummary project) {
+        for (ReportSink sink : sinks) {
+            sink.project(projectNo, project);
+        }
+    }
+
+    @Override
+    public void end() {
+        for (ReportSink sink : sinks) {
+            sink.end();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+import java.io.IOException;
+
+/**
+ * Thrown when a project is over one of its {@code ProjectLimits}.  The
+ * message says which limit, in words fit for the report.
+ * @version 1.0
+ * @author agent
+ */
+public class ProjectLimitException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructor.
+     * @param message Which limit the project is over.
+     */
+    public ProjectLimitException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Limits on how big a project.json may be before Scatt gives up on it, so
+ * one huge, corrupt or malicious project is reported as too large instead
+ * of running the whole batch out of memory.  The limits are checked while
+ * the project is inflated and parsed, before it is all in memory.
+ * Immutable.
+ * @version 1.0
+ * @author agent
+ */
+public final class ProjectLimits {
+    /**
+     * Default limit on the size of project.json once inflated: 64 MB.
+     */
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    /**
+     * Default limit on how deeply json objects and arrays nest.
+     */
+    public static final int DEFAULT_MAX_DEPTH = 256;
+    /**
+     * Default limit on the number of blocks in all of a project's scripts.
+     */
+    public static final int DEFAULT_MAX_BLOCKS = 1000000;
+    /**
+     * The default limits.
+     */
+    public static final ProjectLimits DEFAULT =
+        new ProjectLimits(DEFAULT_MAX_BYTES, DEFAULT_MAX_DEPTH, DEFAULT_MAX_BLOCKS);
+    private final long maxBytes;
+    private final int maxDepth;
+    private final int maxBlocks;
+
+    /**
+     * Constructor.
+     * @param maxBytes The most bytes project.json may have once inflated.
+     * @param maxDepth The deepest json objects and arrays may nest.
+     * @param maxBlocks The most blocks all of a project's scripts may have.
+     */
+    public ProjectLimits(long maxBytes, int maxDepth, int maxBlocks) {
+        if (maxBytes < 1 || maxDepth < 1 || maxBlocks < 1) {
+            throw new IllegalArgumentException("Project limits must be at least 1");
+        }
+        this.maxBytes = maxBytes;
+        this.maxDepth = maxDepth;
+        this.maxBlocks = maxBlocks;
+    }
+
+    /**
+     * The most bytes project.json may have once inflated.
+     * @return The limit.
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * The deepest json objects and arrays may nest.
+     * @return The limit.
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * The most blocks all of a project's scripts may have.
+     * @return The limit.
+     */
+    public int getMaxBlocks() {
+        return maxBlocks;
+    }
+
+    /**
+     * Limits are equal when all three limits are.
+     * @param other The object to compare with.
+     * @return whether {@code other} is the same limits.
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof ProjectLimits)) {
+            return false;
+        }
+        ProjectLimits limits = (ProjectLimits) other;
+        return maxBytes == limits.maxBytes && maxDepth == limits.maxDepth
+            && maxBlocks == limits.maxBlocks;
+    }
+
+    /**
+     * A hash code consistent with {@code equals}.
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        return (Long.hashCode(maxBytes) * 31 + maxDepth) * 31 + maxBlocks;
+    }
+}
@@ -0,0 +1,209 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Reads a project.json in one pass with a {@code JsonPullParser} and keeps
+ * only what Scatt reports on.  The result is a pruned stage JSONObject with
+ * just {@code objName}, {@code scripts}, {@code variables} and the sprites in
+ * {@code children}, each pruned the same way.  Costumes, sounds, lists, info,
+ * stage monitors and every other subtree are skipped without building
+ * objects, so Sb2, Sprites and Script work on the pruned tree exactly as
+ * they would on the full one.
+ * <p>
+ * The reader enforces the nesting and block limits of its
+ * {@code ProjectLimits} as it goes.  A block is counted for each array in
+ * a {@code scripts} value that starts with a string, which is how block
+ * tuples, reporters included, look.
+ * @version 1.0
+ * @author agent
+ */
+public class ProjectReader {
+    private static final String OBJ_NAME = "objName";
+    private static final String SCRIPTS = "scripts";
+    private static final String VARIABLES = "variables";
+    private static final String CHILDREN = "children";
+    private static final String SPRITE_INFO = "spriteInfo";
+    private final JsonPullParser parser;
+    private final int maxBlocks;
+    private int blockCount = 0;
+    private boolean countingBlocks = false;
+
+    /**
+     * Constructor.
+     * @param reader The source of the project.json text.
+     * @param limits The limits to enforce.
+     */
+    private ProjectReader(Reader reader, ProjectLimits limits) {
+        parser = new JsonPullParser(reader);
+        parser.setMaxDepth(limits.getMaxDepth());
+        maxBlocks = limits.getMaxBlocks();
+    }
+
+    /**
+     * Read a project.json and return the pruned stage, within the default
+     * limits.
+     * @param reader The source of the project.json text.
+     * @return The pruned stage JSONObject.
+     * @throws ProjectLimitException if the project is over a limit.
+     * @throws IOException if the reader fails.
+     * @throws JSONException if the text is not a json object.
+     */
+    public static JSONObject read(Reader reader) throws IOException {
+        return read(reader, ProjectLimits.DEFAULT);
+    }
+
+    /**
+     * Read a project.json and return the pruned stage.
+     * @param reader The source of the project.json text.
+     * @param limits The limits to enforce.
+     * @return The pruned stage JSONObject.
+     * @throws ProjectLimitException if the project is over a limit.
+     * @throws IOException if the reader fails.
+     * @throws JSONException if the text is not a json object.
+     */
+    public static JSONObject read(Reader reader, ProjectLimits limits) throws IOException {
+        try {
+            return new ProjectReader(reader, limits).readStage();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Read the stage, which is the root object of project.json.
+     * @return The pruned stage.
+     */
+    private JSONObject readStage() {
+        if (parser.next() != JsonPullParser.Event.START_OBJECT) {
+            throw new JSONException("A JSONObject text must begin with '{'");
+        }
+        JSONObject stage = new JSONObject();
+        while (parser.next() == JsonPullParser.Event.FIELD_NAME) {
+            if (parser.textEquals(CHILDREN)) {
+                stage.put(CHILDREN, readChildren(parser.next()));
+            } else if (!readReportedField(stage)) {
+                parser.skipValue(parser.next());
+            }
+        }
+        return stage;
+    }
+
+    /**
+     * Read the stage's children, keeping only the sprites.
+     * @param first The first event of the children value.
+     * @return The pruned sprites, in authoring order.
+     */
+    private JSONArray readChildren(JsonPullParser.Event first) {
+        JSONArray sprites = new JSONArray();
+        if (first != JsonPullParser.Event.START_ARRAY) {
+            parser.skipValue(first);
+            return sprites;
+        }
+        JsonPullParser.Event event;
+        while ((event = parser.next()) != JsonPullParser.Event.END_ARRAY) {
+            if (event == JsonPullParser.Event.START_OBJECT) {
+                JSONObject child = readChild();
+                if (child.has(SPRITE_INFO)) {
+                    sprites.put(child);
+                }
+            } else {
+                parser.skipValue(event);
+            }
+        }
+        return sprites;
+    }
+
+    /**
+     * Read one child of the stage.  Only sprites have a {@code spriteInfo};
+     * it is kept as an empty object so the child can still be recognised.
+     * @return The pruned child.
+     */
+    private JSONObject readChild() {
+        JSONObject child = new JSONObject();
+        while (parser.next() == JsonPullParser.Event.FIELD_NAME) {
+            if (parser.textEquals(SPRITE_INFO)) {
+                parser.skipValue(parser.next());
+                child.put(SPRITE_INFO, new JSONObject());
+            } else if (!readReportedField(child)) {
+                parser.skipValue(parser.next());
+            }
+        }
+        return child;
+    }
+
+    /**
+     * If the current field is one that stage and sprites share and Scatt
+     * reports on, read its value into {@code target}.
+     * @param target The object to put the value in.
+     * @return whether the field was read.
+     */
+    private boolean readReportedField(JSONObject target) {
+        if (parser.textEquals(OBJ_NAME)) {
+            target.put(OBJ_NAME, readValue(parser.next()));
+        } else if (parser.textEquals(SCRIPTS)) {
+            countingBlocks = true;
+            target.put(SCRIPTS, readValue(parser.next()));
+            countingBlocks = false;
+        } else if (parser.textEquals(VARIABLES)) {
+            target.put(VARIABLES, readValue(parser.next()));
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Build a value the way org.json would.
+     * @param first The first event of the value.
+     * @return A JSONObject, JSONArray, String, Number, Boolean or
+     *     {@code JSONObject.NULL}.
+     */
+    private Object readValue(JsonPullParser.Event first) {
+        switch (first) {
+            case START_OBJECT:
+                JSONObject object = new JSONObject();
+                while (parser.next() == JsonPullParser.Event.FIELD_NAME) {
+                    String key = parser.getText();
+                    object.put(key, readValue(parser.next()));
+                }
+                return object;
+            case START_ARRAY:
+                JSONArray array = new JSONArray();
+                JsonPullParser.Event event;
+                while ((event = parser.next()) != JsonPullParser.Event.END_ARRAY) {
+                    Object value = readValue(event);
+                    if (countingBlocks && array.length() == 0 && value instanceof String) {
+                        countBlock();
+                    }
+                    array.put(value);
+                }
+                return array;
+            case STRING:
+                return parser.getText();
+            case NUMBER:
+                return JSONObject.stringToValue(parser.getText());
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case NULL:
+                return JSONObject.NULL;
+            default:
+                throw new JSONException("Unexpected " + first);
+        }
+    }
+
+    /**
+     * Count a block, and stop reading if there are too many.
+     */
+    private void countBlock() {
+        if (++blockCount > maxBlocks) {
+            throw new UncheckedIOException(new ProjectLimitException(
+                "Its scripts have more than " + maxBlocks + " blocks."));
+        }
+    }
+}
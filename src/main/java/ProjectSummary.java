@@ -0,0 +1,302 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Everything the Reporter needs to know about one project: its name, any
+ * error, and the analysis of every stage and sprite script.  Unlike an Sb2 a
+ * summary holds no json, so it is small enough to keep for many projects
+ * and can be stored in and read back from an {@code AnalysisCache}.
+ * Immutable.
+ * @version 1.0
+ * @author agent
+ */
+public final class ProjectSummary {
+    private final String name;
+    private final String errorMessage;
+    private final ScriptAnalysis[] stageScripts;
+    private final String[] spriteNames;
+    private final ScriptAnalysis[][] spriteScripts;
+    private final int[] authoringOrder;
+    private final int[] authoringPositions;
+
+    /**
+     * Constructor.  The arrays are used as they are, not copied.
+     * @param name The name of the project.
+     * @param errorMessage The error message, or null.
+     * @param stageScripts The analyses of the stage scripts.
+     * @param spriteNames The sprite names, in report order.
+     * @param spriteScripts The analyses of each sprite's scripts.
+     * @param authoringOrder The index of each sprite, in the order the
+     *     sprites were made.
+     */
+    private ProjectSummary(String name, String errorMessage, ScriptAnalysis[] stageScripts,
+                           String[] spriteNames, ScriptAnalysis[][] spriteScripts,
+                           int[] authoringOrder) {
+        this.name = name;
+        this.errorMessage = errorMessage;
+        this.stageScripts = stageScripts;
+        this.spriteNames = spriteNames;
+        this.spriteScripts = spriteScripts;
+        this.authoringOrder = authoringOrder;
+        authoringPositions = new int[authoringOrder.length];
+        for (int position = 0; position < authoringOrder.length; position++) {
+            authoringPositions[authoringOrder[position]] = position;
+        }
+    }
+
+    /**
+     * Summarize an Sb2.  This analyses every script in the project.
+     * @param sb2 The Sb2.
+     * @return The summary.
+     */
+    public static ProjectSummary of(Sb2 sb2) {
+        return of(sb2, null);
+    }
+
+    /**
+     * Summarize an Sb2, analysing its sprites in parallel.  Each sprite's
+     * scripts are parsed and analysed by a task of their own, as are the
+     * stage scripts, so one project with many large sprites is spread over
+     * the pool instead of holding up one thread.  The summary is the same
+     * as a sequential one.
+     * @param sb2 The Sb2.
+     * @param pool The pool to analyse on, or null to analyse on the calling
+     *     thread.  When called from a fork-join worker the tasks are forked
+     *     in that worker's pool.
+     * @return The summary.
+     */
+    public static ProjectSummary of(Sb2 sb2, ForkJoinPool pool) {
+        if (sb2.getErrorMessage() != null) {
+            return new ProjectSummary(sb2.getName(), sb2.getErrorMessage(),
+                new ScriptAnalysis[0], new String[0], new ScriptAnalysis[0][], new int[0]);
+        }
+        String[] spriteNames = sb2.getSpriteNames();
+        ScriptAnalysis[] stageScripts;
+        ScriptAnalysis[][] spriteScripts = new ScriptAnalysis[spriteNames.length][];
+        if (pool == null || spriteNames.length == 0) {
+            stageScripts = analyze(sb2.getScriptsForStage());
+            for (int i = 0; i < spriteNames.length; i++) {
+                spriteScripts[i] = analyze(sb2.getScriptsForSprite(spriteNames[i]));
+            }
+        } else {
+            List<ForkJoinTask<ScriptAnalysis[]>> tasks = new ArrayList<>();
+            tasks.add(ForkJoinTask.adapt(() -> analyze(sb2.getScriptsForStage())));
+            for (String spriteName : spriteNames) {
+                tasks.add(ForkJoinTask.adapt(() -> analyze(sb2.getScriptsForSprite(spriteName))));
+            }
+            if (ForkJoinTask.inForkJoinPool()) {
+                ForkJoinTask.invokeAll(tasks);
+            } else {
+                pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+            }
+            stageScripts = tasks.get(0).join();
+            for (int i = 0; i < spriteNames.length; i++) {
+                spriteScripts[i] = tasks.get(i + 1).join();
+            }
+        }
+        List<String> authored = sb2.getSpriteNamesInAuthoringOrder();
+        int[] authoringOrder = new int[authored.size()];
+        for (int i = 0; i < authoringOrder.length; i++) {
+            authoringOrder[i] = Arrays.binarySearch(spriteNames, authored.get(i));
+        }
+        return new ProjectSummary(sb2.getName(), null, stageScripts, spriteNames, spriteScripts,
+            authoringOrder);
+    }
+
+    /**
+     * Analyse an array of scripts.
+     * @param scripts The scripts.
+     * @return Their analyses, in the same order.
+     */
+    private static ScriptAnalysis[] analyze(Script[] scripts) {
+        ScriptAnalysis[] analyses = new ScriptAnalysis[scripts.length];
+        for (int i = 0; i < scripts.length; i++) {
+            analyses[i] = scripts[i].getAnalysis();
+        }
+        return analyses;
+    }
+
+    /**
+     * Return the name.
+     * @return The name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The error message of the Sb2 this summarizes.
+     * @return Error message if any, otherwise null.
+     */
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    /**
+     * The number of stage scripts.
+     * @return the number of stage scripts.
+     */
+    public int getStageScriptCount() {
+        return stageScripts.length;
+    }
+
+    /**
+     * The analysis of one stage script.
+     * @param scriptIndex The index of the script, starting from 0.
+     * @return the analysis.
+     */
+    public ScriptAnalysis getStageScript(int scriptIndex) {
+        return stageScripts[scriptIndex];
+    }
+
+    /**
+     * Total the block counts by category of all the stage scripts.
+     * @return An array indexed like {@code ScriptSpecs.getCategories}.
+     */
+    public int[] sumStageBlocksByCategory() {
+        int[] totals = new int[ScriptSpecs.getCategories().length];
+        for (ScriptAnalysis analysis : stageScripts) {
+            analysis.addBlocksByCategory(totals);
+        }
+        return totals;
+    }
+
+    /**
+     * The number of sprites.
+     * @return the number of sprites.
+     */
+    public int getSpriteCount() {
+        return spriteNames.length;
+    }
+
+    /**
+     * The unique name of a sprite.  Sprites are in the order of
+     * {@code Sb2.getSpriteNames}.
+     * @param spriteIndex The index of the sprite, starting from 0.
+     * @return the name.
+     */
+    public String getSpriteName(int spriteIndex) {
+        return spriteNames[spriteIndex];
+    }
+
+    /**
+     * The index of a sprite, counting the sprites in the order they were
+     * made instead of by name.
+     * @param position The position of the sprite in the order it was made,
+     *     starting from 0.
+     * @return The index of the sprite, as for {@code getSpriteName}.
+     */
+    public int getSpriteIndexInAuthoringOrder(int position) {
+        return authoringOrder[position];
+    }
+
+    /**
+     * Where a sprite comes in the order the sprites were made.  The inverse
+     * of {@code getSpriteIndexInAuthoringOrder}.
+     * @param spriteIndex The index of the sprite, as for {@code getSpriteName}.
+     * @return The position of the sprite in the order it was made, starting
+     *     from 0.
+     */
+    public int getAuthoringPosition(int spriteIndex) {
+        return authoringPositions[spriteIndex];
+    }
+
+    /**
+     * The number of scripts of a sprite.
+     * @param spriteIndex The index of the sprite, starting from 0.
+     * @return the number of scripts.
+     */
+    public int getScriptCount(int spriteIndex) {
+        return spriteScripts[spriteIndex].length;
+    }
+
+    /**
+     * The analysis of one sprite script.
+     * @param spriteIndex The index of the sprite, starting from 0.
+     * @param scriptIndex The index of the script, starting from 0.
+     * @return the analysis.
+     */
+    public ScriptAnalysis getScript(int spriteIndex, int scriptIndex) {
+        return spriteScripts[spriteIndex][scriptIndex];
+    }
+
+    /**
+     * Write this summary in the binary form {@code readFrom} reads.
+     * @param out Where to write.
+     * @throws IOException if writing fails.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeUTF(name);
+        out.writeBoolean(errorMessage != null);
+        if (errorMessage != null) {
+            out.writeUTF(errorMessage);
+        }
+        writeAnalyses(out, stageScripts);
+        out.writeInt(spriteNames.length);
+        for (int i = 0; i < spriteNames.length; i++) {
+            out.writeUTF(spriteNames[i]);
+            writeAnalyses(out, spriteScripts[i]);
+        }
+        for (int index : authoringOrder) {
+            out.writeInt(index);
+        }
+    }
+
+    /**
+     * Read a summary written by {@code writeTo}.
+     * @param in Where to read from.
+     * @return The summary.
+     * @throws IOException if reading fails.
+     */
+    public static ProjectSummary readFrom(DataInput in) throws IOException {
+        String name = in.readUTF();
+        String errorMessage = in.readBoolean() ? in.readUTF() : null;
+        ScriptAnalysis[] stageScripts = readAnalyses(in);
+        String[] spriteNames = new String[in.readInt()];
+        ScriptAnalysis[][] spriteScripts = new ScriptAnalysis[spriteNames.length][];
+        for (int i = 0; i < spriteNames.length; i++) {
+            spriteNames[i] = in.readUTF();
+            spriteScripts[i] = readAnalyses(in);
+        }
+        int[] authoringOrder = new int[spriteNames.length];
+        for (int i = 0; i < authoringOrder.length; i++) {
+            authoringOrder[i] = in.readInt();
+        }
+        return new ProjectSummary(name, errorMessage, stageScripts, spriteNames, spriteScripts,
+            authoringOrder);
+    }
+
+    /**
+     * Write an array of analyses.
+     * @param out Where to write.
+     * @param analyses The analyses.
+     * @throws IOException if writing fails.
+     */
+    private static void writeAnalyses(DataOutput out, ScriptAnalysis[] analyses)
+            throws IOException {
+        out.writeInt(analyses.length);
+        for (ScriptAnalysis analysis : analyses) {
+            analysis.writeTo(out);
+        }
+    }
+
+    /**
+     * Read an array of analyses.
+     * @param in Where to read from.
+     * @return The analyses.
+     * @throws IOException if reading fails.
+     */
+    private static ScriptAnalysis[] readAnalyses(DataInput in) throws IOException {
+        ScriptAnalysis[] analyses = new ScriptAnalysis[in.readInt()];
+        for (int i = 0; i < analyses.length; i++) {
+            analyses[i] = ScriptAnalysis.readFrom(in);
+        }
+        return analyses;
+    }
+}
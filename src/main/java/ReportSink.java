@@ -0,0 +1,46 @@
+import java.util.Iterator;
+
+/**
+ * Somewhere a report is written to, one project at a time, in some format.
+ * Each sink is told about the projects in report order, as each one is
+ * ready, so nothing has to be held back until the end.  What each sink
+ * writes is chosen by the same bit vector of flags as the text report.
+ * @version 1.0
+ * @author agent
+ */
+public interface ReportSink {
+    /**
+     * Start the report.
+     * @param projectCount The number of projects that will be reported.
+     */
+    void begin(int projectCount);
+
+    /**
+     * Report one project.
+     * @param projectNo The number of the project in the report.  Starting from 1.
+     * @param project The project.
+     */
+    void project(int projectNo, ProjectSummary project);
+
+    /**
+     * Finish the report and flush anything held back.  The sink does not close
+     * the writer it was given.
+     */
+    void end();
+
+    /**
+     * Write a whole report to a sink.
+     * @param sink The sink.  Use a {@code MultiReportSink} to write several
+     *     formats in one pass.
+     * @param projectCount The number of summaries {@code summaries} will produce.
+     * @param summaries Iterator over the summaries of the projects to report.
+     */
+    static void writeAll(ReportSink sink, int projectCount, Iterator<ProjectSummary> summaries) {
+        sink.begin(projectCount);
+        int projectNo = 1;
+        while (summaries.hasNext()) {
+            sink.project(projectNo++, summaries.next());
+        }
+        sink.end();
+    }
+}
@@ -0,0 +1,222 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the report on a directory of .sb2 files up to date as files are
+ * added, changed and deleted.  The summaries of all the projects are kept in
+ * memory, and when a file changes only that file is read again, and only
+ * the sections of the report that changed are written again.  Changes are
+ * noticed through a WatchService, and changes that come close together, like
+ * the writes of one upload, are handled together.
+ * @version 1.0
+ * @author agent
+ */
+public class ReportWatcher implements Closeable {
+    /**
+     * How long to wait after a change for more changes before updating the
+     * report, in milliseconds.
+     */
+    public static final long DEFAULT_QUIET_MILLIS = 100;
+    private static final String SB2_SUFFIX = ".sb2";
+    /**
+     * Report order: by name ignoring case, then by name, as {@code Sb2Finder}
+     * sorts a flat directory.
+     */
+    private static final Comparator<String> REPORT_ORDER = (name1, name2) -> {
+        int compare = name1.compareToIgnoreCase(name2);
+        return compare != 0 ? compare : name1.compareTo(name2);
+    };
+
+    private final File sb2Dir;
+    private final File reportFile;
+    private final IncrementalReportWriter reportWriter;
+    private final Notifier notifier;
+    private final WatchService watchService;
+    private final TreeMap<String, ProjectSummary> summaries = new TreeMap<>(REPORT_ORDER);
+    private int workerCount = Sb2Loader.DEFAULT_WORKERS;
+    private AnalysisCache analysisCache = null;
+    private ProjectLimits limits = ProjectLimits.DEFAULT;
+    private long quietMillis = DEFAULT_QUIET_MILLIS;
+
+    /**
+     * Start watching a directory.  Nothing is read or reported until
+     * {@code run} is called.
+     * @param sb2Dir The directory of .sb2 files.
+     * @param reportFile Where to write the report.
+     * @param reporter The Reporter to write it with.
+     * @param notifier Told each time the report has been written.
+     * @throws IOException if the directory cannot be watched.
+     */
+    public ReportWatcher(File sb2Dir, File reportFile, Reporter reporter, Notifier notifier)
+            throws IOException {
+        this.sb2Dir = sb2Dir;
+        this.reportFile = reportFile;
+        this.reportWriter = new IncrementalReportWriter(reporter, reportFile);
+        this.notifier = notifier;
+        Path dir = sb2Dir.toPath();
+        watchService = dir.getFileSystem().newWatchService();
+        dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+    }
+
+    /**
+     * Set the number of threads used to read the projects when the whole
+     * directory is read.
+     * @param workerCount As for {@code Sb2Loader}.
+     */
+    public void setWorkerCount(int workerCount) {
+        this.workerCount = workerCount;
+    }
+
+    /**
+     * Use a persistent cache of project analyses.  It is saved after each
+     * report.
+     * @param analysisCache The cache, or null.
+     */
+    public void setAnalysisCache(AnalysisCache analysisCache) {
+        this.analysisCache = analysisCache;
+    }
+
+    /**
+     * Set the limits on the size of a project that is read.
+     * @param limits The limits.
+     */
+    public void setLimits(ProjectLimits limits) {
+        this.limits = limits;
+    }
+
+    /**
+     * Set how long to wait after a change for more changes.
+     * @param quietMillis The wait in milliseconds.
+     */
+    public void setQuietMillis(long quietMillis) {
+        this.quietMillis = quietMillis;
+    }
+
+    /**
+     * Read every project, write the report, then keep it up to date until
+     * {@code close} is called, the thread is interrupted or the directory
+     * goes away.
+     */
+    public void run() {
+        readAll();
+        writeReport();
+        try {
+            boolean watching = true;
+            while (watching) {
+                Set<String> changed = new TreeSet<>();
+                WatchKey key = watchService.take();
+                boolean overflow = collectChanges(key, changed);
+                watching = key.reset();
+                while ((key = watchService.poll(quietMillis, TimeUnit.MILLISECONDS)) != null) {
+                    overflow |= collectChanges(key, changed);
+                    watching &= key.reset();
+                }
+                if (overflow) {
+                    readAll();
+                } else if (changed.isEmpty()) {
+                    continue;
+                } else {
+                    for (String name : changed) {
+                        readOne(name);
+                    }
+                }
+                writeReport();
+            }
+        } catch (ClosedWatchServiceException e) {
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stop watching.  {@code run} returns soon after.
+     * @throws IOException if the watch service cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    /**
+     * Note the .sb2 files a watch key has events for.
+     * @param key The key.
+     * @param changed The names of changed .sb2 files, added to.
+     * @return Whether events were lost, so every file must be read again.
+     */
+    private static boolean collectChanges(WatchKey key, Set<String> changed) {
+        boolean overflow = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+            } else {
+                String name = event.context().toString();
+                if (name.endsWith(SB2_SUFFIX)) {
+                    changed.add(name);
+                }
+            }
+        }
+        return overflow;
+    }
+
+    /**
+     * Forget every project and read them all again.
+     */
+    private void readAll() {
+        summaries.clear();
+        File[] sb2Files = new Sb2Finder().find(sb2Dir);
+        Sb2Loader loader = new Sb2Loader(workerCount);
+        loader.setLimits(limits);
+        Iterator<ProjectSummary> read = loader.streamSummaries(sb2Files, analysisCache);
+        for (File sb2File : sb2Files) {
+            summaries.put(sb2File.getName(), read.next());
+        }
+    }
+
+    /**
+     * Read one project again, or forget it if it is gone.
+     * @param name The file name of the project.
+     */
+    private void readOne(String name) {
+        File sb2File = new File(sb2Dir, name);
+        if (sb2File.isFile()) {
+            summaries.put(name, Sb2Loader.summarize(sb2File, analysisCache, limits));
+        } else {
+            summaries.remove(name);
+        }
+    }
+
+    /**
+     * Write the report from the summaries in memory, and save the cache.
+     */
+    private void writeReport() {
+        try {
+            reportWriter.write(new ArrayList<>(summaries.values()));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (analysisCache != null) {
+            try {
+                analysisCache.save();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        notifier.notify("Report updated at " + reportFile.getAbsolutePath());
+    }
+}
@@ -1,6 +1,15 @@
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.io.Writer;
 import java.io.FileNotFoundException;
 /**
@@ -24,8 +33,28 @@ public class Reporter {
     public static final int SCRIPT_BYCATTOT          = 0b0010_0000_0000;
     
 
+    /**
+     * The charset reports are written to files in.
+     */
+    static final Charset CHARSET = StandardCharsets.UTF_8;
+
     private static final String TAB = "    ";
+    private static final String SPRITE_INDENT = TAB;
+    private static final String SCRIPT_INDENT = TAB + TAB;
+    private static final String SCRIPT_DETAIL_INDENT = TAB + TAB + TAB;
+    private static final int BUFFER_SIZE = 64 * 1024;
     private int whatToReport;
+    private boolean reportSummary = false;
+    private boolean reportDuplicates = false;
+    private boolean authoringOrder = false;
+    /**
+     * Each section of the report is built here and then handed to the
+     * PrintWriter in one write, so a Reporter must only write one report at
+     * a time.  Every section starts by emptying it, so text left by a
+     * section that threw is never written with the next one.
+     */
+    private final StringBuilder section = new StringBuilder(BUFFER_SIZE);
+    private final int[] scriptBlocksByCat = new int[ScriptSpecs.getCategories().length];
     /**
      * Constructor to configure what gets reported and what doesn't.
      * @param bitVector an int representing a bit vector indicating which
@@ -49,6 +78,80 @@ public class Reporter {
     private boolean shouldReport(int flag) {
         return (whatToReport & flag) != 0;
     }
+    /**
+     * The bit vector of what to report.
+     * @return the flags this Reporter was made with.
+     */
+    int getWhatToReport() {
+        return whatToReport;
+    }
+    /**
+     * Choose whether to end the report with a summary of every project:
+     * script length statistics and block counts by category across the
+     * projects.  Off by default, so a report with the same flags stays the
+     * same.
+     * @param reportSummary whether to write the summary.
+     */
+    public void setReportSummary(boolean reportSummary) {
+        this.reportSummary = reportSummary;
+    }
+    /**
+     * Whether the report ends with a summary of every project.
+     * @return whether to write the summary.
+     */
+    public boolean isReportSummary() {
+        return reportSummary;
+    }
+    /**
+     * Choose whether to end the report with the scripts that are the same,
+     * or nearly the same, in different projects.  Off by default.
+     * @param reportDuplicates whether to write the duplicate scripts.
+     */
+    public void setReportDuplicates(boolean reportDuplicates) {
+        this.reportDuplicates = reportDuplicates;
+    }
+    /**
+     * Whether the report ends with the duplicate scripts.
+     * @return whether to write the duplicate scripts.
+     */
+    public boolean isReportDuplicates() {
+        return reportDuplicates;
+    }
+    /**
+     * Choose whether sprites are reported in the order they were made,
+     * rather than sorted by name.  Off by default.  The sprites are
+     * numbered in the order they are reported, in the project sections and
+     * in the duplicate scripts alike.
+     * @param authoringOrder whether to report sprites in authoring order.
+     */
+    public void setAuthoringOrder(boolean authoringOrder) {
+        this.authoringOrder = authoringOrder;
+    }
+    /**
+     * Whether sprites are reported in the order they were made.
+     * @return whether to report sprites in authoring order.
+     */
+    public boolean isAuthoringOrder() {
+        return authoringOrder;
+    }
+    /**
+     * Open a report file: buffered, in {@code CHARSET}.
+     * @param file The file.
+     * @return A PrintWriter to write the report with.
+     * @throws FileNotFoundException if the file cannot be opened.
+     */
+    static PrintWriter openReport(File file) throws FileNotFoundException {
+        return openReport(new FileOutputStream(file));
+    }
+    /**
+     * Wrap a stream to write a report to: buffered, in {@code CHARSET}.
+     * @param out The stream.
+     * @return A PrintWriter to write the report with.
+     */
+    static PrintWriter openReport(OutputStream out) {
+        return new PrintWriter(new BufferedWriter(new OutputStreamWriter(out, CHARSET),
+            BUFFER_SIZE));
+    }
     
     /**
      * Write report to a writer.
@@ -66,122 +169,321 @@ public class Reporter {
      * @param sb2List List of Sb2 objects which are the subject of the report.
      */
     public void writeReport(String destPath, List<Sb2> sb2List) {
-        try (PrintWriter printWriter = new PrintWriter(new File(destPath))) {
+        try (PrintWriter printWriter = openReport(new File(destPath))) {
             writeReport(printWriter, sb2List);
         } catch (FileNotFoundException e) {
             e.printStackTrace();
         }
     }
+    /**
+     * Write report to a file, reporting each Sb2 as it is produced.
+     * @param destPath Path to the destinatin file.
+     * @param projectCount The number of Sb2s {@code sb2s} will produce.
+     * @param sb2s Iterator over the Sb2 objects which are the subject of the report.
+     */
+    public void writeReport(String destPath, int projectCount, Iterator<Sb2> sb2s) {
+        try (PrintWriter printWriter = openReport(new File(destPath))) {
+            writeReport(printWriter, projectCount, sb2s);
+        } catch (FileNotFoundException e) {
+            e.printStackTrace();
+        }
+    }
     /**
      * Write report to a PrintWriter.
      * @param pw The PrintWriter.
      * @param sb2List List of Sb2 objects which are the subject of the report.
      */
     public void writeReport(PrintWriter pw, List<Sb2> sb2List) {
-        pw.write("Scratch Report\n\n");
-        if (shouldReport(NUM_PROJECTS)) {
-            pw.write("Number of projects: " + sb2List.size() + "\n");
+        writeReport(pw, sb2List.size(), sb2List.iterator());
+    }
+    /**
+     * Write report to a PrintWriter, reporting each Sb2 as it is produced.
+     * The report keeps no reference to an Sb2 once its section is written, so
+     * a lazy iterator lets the caller report on any number of projects while
+     * holding only one at a time.
+     * @param pw The PrintWriter.
+     * @param projectCount The number of Sb2s {@code sb2s} will produce.
+     * @param sb2s Iterator over the Sb2 objects which are the subject of the report.
+     */
+    public void writeReport(PrintWriter pw, int projectCount, Iterator<Sb2> sb2s) {
+        writeSummaries(pw, projectCount, new Iterator<ProjectSummary>() {
+            @Override
+            public boolean hasNext() {
+                return sb2s.hasNext();
+            }
+            @Override
+            public ProjectSummary next() {
+                return ProjectSummary.of(sb2s.next());
+            }
+        });
+    }
+    /**
+     * Write report to a file from project summaries, reporting each one as it
+     * is produced.
+     * @param destPath Path to the destinatin file.
+     * @param projectCount The number of summaries {@code summaries} will produce.
+     * @param summaries Iterator over the summaries of the projects to report.
+     */
+    public void writeSummaries(String destPath, int projectCount,
+                               Iterator<ProjectSummary> summaries) {
+        try (PrintWriter printWriter = openReport(new File(destPath))) {
+            writeSummaries(printWriter, projectCount, summaries);
+        } catch (FileNotFoundException e) {
+            e.printStackTrace();
         }
-        for (int i = 0; i < sb2List.size(); i++) {
-            Sb2 sb2 = sb2List.get(i);
-            reportProject(i + 1, pw, sb2);
+    }
+    /**
+     * Write report to a PrintWriter from project summaries, reporting each one
+     * as it is produced.
+     * @param pw The PrintWriter.
+     * @param projectCount The number of summaries {@code summaries} will produce.
+     * @param summaries Iterator over the summaries of the projects to report.
+     */
+    public void writeSummaries(PrintWriter pw, int projectCount,
+                               Iterator<ProjectSummary> summaries) {
+        reportHeader(projectCount, pw);
+        AggregateStats stats = reportSummary ? new AggregateStats() : null;
+        DuplicateDetector duplicates = reportDuplicates ? new DuplicateDetector() : null;
+        int projectNo = 1;
+        while (summaries.hasNext()) {
+            ProjectSummary project = summaries.next();
+            reportProject(projectNo, pw, project);
+            if (stats != null) {
+                stats.add(project);
+            }
+            if (duplicates != null) {
+                duplicates.add(projectNo, project);
+            }
+            projectNo++;
+        }
+        if (stats != null) {
+            reportSummary(pw, stats);
+        }
+        if (duplicates != null) {
+            reportDuplicates(pw, duplicates);
         }
     }
     /**
-     * Report one Scratch project, represented by one Sb2 object from the list.
+     * Write the part of the report before the first project.
+     * @param projectCount The number of projects in the report.
+     * @param pw The PrintWriter.
+     */
+    void reportHeader(int projectCount, PrintWriter pw) {
+        section.setLength(0);
+        section.append("Scratch Report\n\n");
+        if (shouldReport(NUM_PROJECTS)) {
+            section.append("Number of projects: ").append(projectCount).append('\n');
+        }
+        writeSection(pw);
+    }
+    /**
+     * Report one Scratch project, represented by the summary of one Sb2.
+     * The report is its header followed by one of these sections for each
+     * project, with nothing in between.
      * @param projectNo The index of the project in the list.  Starting from 1.
      * @param pw The PrintWriter.
-     * @param sb2 The sb2.
+     * @param project The project summary.
      */
-    private void reportProject(int projectNo, PrintWriter pw, Sb2 sb2) {
+    void reportProject(int projectNo, PrintWriter pw, ProjectSummary project) {
+        section.setLength(0);
         if (shouldReport(PROJECT_HEADERS)) {
-            pw.write("\n\nProject " + projectNo + ": " + sb2.getName() + "\n");
+            section.append("\n\nProject ").append(projectNo).append(": ")
+                .append(project.getName()).append('\n');
         }
-        String errorMessage = sb2.getErrorMessage();
+        String errorMessage = project.getErrorMessage();
         if (errorMessage != null) {
-            pw.write(errorMessage + "\n");
+            section.append(errorMessage).append('\n');
         } else {
-            Script[] stageScripts = sb2.getScriptsForStage();
             if (shouldReport(STAGE_SCRIPTS_BYCATTOT)) {
-                pw.write("Stage scripts blocks by category totals:\n "
-                         + blocksByCatString(Script.sumBlocksByCategory(stageScripts)) + "\n");
+                section.append("Stage scripts blocks by category totals:\n ");
+                appendBlocksByCat(project.sumStageBlocksByCategory());
+                section.append('\n');
             }
             if (shouldReport(STAGE_SCRIPTS)) {
-                for (int i = 0; i < stageScripts.length; i++) {
-                    reportScript(i + 1, stageScripts[i], pw);
+                for (int i = 0; i < project.getStageScriptCount(); i++) {
+                    reportScript(i + 1, project.getStageScript(i));
                 }
             }
-            String[] spriteNames = sb2.getSpriteNames();
             if (shouldReport(SPRITES_PER_PROJECT)) {
-                pw.write(spriteNames.length + " sprites\n");
+                section.append(project.getSpriteCount()).append(" sprites\n");
             }
-            for (int i = 0; i < spriteNames.length; i++) {
-                reportSprite(i + 1, spriteNames[i], pw, sb2);
+            for (int i = 0; i < project.getSpriteCount(); i++) {
+                int spriteIndex = authoringOrder ? project.getSpriteIndexInAuthoringOrder(i) : i;
+                reportSprite(i + 1, spriteIndex, project);
             }
         }
+        writeSection(pw);
     }
     /**
-     * Report one Sprite from a Scratch project.
-     * @param spriteNo The index of the Sprite in the list.  Starting from 1.
-     * @param spriteName The name of the Sprite.
+     * Write the summary that ends the report.
+     * @param pw The PrintWriter.
+     * @param stats Statistics over every project in the report.
+     */
+    void reportSummary(PrintWriter pw, AggregateStats stats) {
+        section.setLength(0);
+        section.append("\n\nSummary\n");
+        section.append("Projects: ").append(stats.getProjectCount());
+        if (stats.getUnreadableCount() > 0) {
+            section.append(" (").append(stats.getUnreadableCount())
+                .append(" could not be read)");
+        }
+        section.append('\n');
+        CountDistribution lengths = stats.getScriptLengths();
+        section.append("Scripts: ").append(lengths.getCount()).append('\n');
+        section.append("Script length: ");
+        appendDistribution(lengths);
+        section.append('\n');
+        long[] buckets = lengths.getPowerOfTwoBuckets();
+        for (int i = 0; i < buckets.length; i++) {
+            if (buckets[i] > 0) {
+                int low = i == 0 ? 0 : 1 << (i - 1);
+                int high = i == 0 ? 0 : (1 << i) - 1;
+                section.append(SPRITE_INDENT).append("length ").append(low);
+                if (high > low) {
+                    section.append('-').append(high);
+                }
+                section.append(": ").append(buckets[i]).append(" scripts\n");
+            }
+        }
+        String[] cats = ScriptSpecs.getCategories();
+        long[] blocksByCat = stats.getBlocksByCategory();
+        section.append("Blocks by category totals and per project:\n");
+        for (int i = 0; i < cats.length; i++) {
+            section.append(SPRITE_INDENT).append(cats[i]).append(": ")
+                .append(blocksByCat[i]).append("; ");
+            appendDistribution(stats.getProjectBlocks(i));
+            section.append('\n');
+        }
+        writeSection(pw);
+    }
+    /**
+     * Write the section listing scripts that are the same, or nearly the
+     * same, in different projects.
      * @param pw The PrintWriter.
-     * @param sb2 The sb2.
+     * @param duplicates The detector every project in the report was added to.
      */
-    private void reportSprite(int spriteNo, String spriteName, PrintWriter pw, Sb2 sb2) {
-        String tab = TAB;
+    void reportDuplicates(PrintWriter pw, DuplicateDetector duplicates) {
+        section.setLength(0);
+        section.append("\n\nDuplicate scripts\n");
+        section.append("Same scripts in different projects:\n");
+        List<List<DuplicateDetector.ScriptRef>> same = duplicates.getSameScripts();
+        for (List<DuplicateDetector.ScriptRef> group : same) {
+            section.append('\n');
+            for (DuplicateDetector.ScriptRef script : group) {
+                appendScriptRef(script);
+            }
+        }
+        if (same.isEmpty()) {
+            section.append(SPRITE_INDENT).append("none\n");
+        }
+        section.append("\nSimilar scripts in different projects:\n");
+        List<DuplicateDetector.SimilarPair> similar = duplicates.getSimilarScripts();
+        for (DuplicateDetector.SimilarPair pair : similar) {
+            section.append('\n');
+            appendScriptRef(pair.getFirst());
+            appendScriptRef(pair.getSecond());
+            section.append(SCRIPT_INDENT).append(Math.round(100 * pair.getSimilarity()))
+                .append("% alike\n");
+        }
+        if (similar.isEmpty()) {
+            section.append(SPRITE_INDENT).append("none\n");
+        }
+        writeSection(pw);
+    }
+    /**
+     * Appends a line saying where a script is.
+     * @param script The script.
+     */
+    private void appendScriptRef(DuplicateDetector.ScriptRef script) {
+        section.append(SPRITE_INDENT).append("Project ").append(script.getProjectNo())
+            .append(": ").append(script.getProjectName()).append(", ");
+        if (script.getSpriteNo() == 0) {
+            section.append("Stage");
+        } else {
+            int spriteNo = authoringOrder ? script.getAuthoredSpriteNo() : script.getSpriteNo();
+            section.append("Sprite ").append(spriteNo).append(": ")
+                .append(script.getSpriteName());
+        }
+        section.append(", Script ").append(script.getScriptNo()).append(" (length ")
+            .append(script.getAnalysis().getLength()).append(")\n");
+    }
+    /**
+     * Appends the mean, median, 90th percentile and largest of a distribution.
+     * @param distribution The distribution.
+     */
+    private void appendDistribution(CountDistribution distribution) {
+        section.append("mean ").append(String.format(Locale.ROOT, "%.2f", distribution.getMean()))
+            .append(", median ").append(distribution.getMedian())
+            .append(", 90th percentile ").append(distribution.getPercentile(90))
+            .append(", max ").append(distribution.getMax());
+    }
+    /**
+     * Report one Sprite from a Scratch project.
+     * @param spriteNo The number of the Sprite in the report.  Starting from 1.
+     * @param spriteIndex The index of the Sprite in the project.  Starting from 0.
+     * @param project The project summary.
+     */
+    private void reportSprite(int spriteNo, int spriteIndex, ProjectSummary project) {
         if (shouldReport(SPRITE_HEADERS)) {
-            pw.write("\n" + tab + "Sprite " + spriteNo + ": " + spriteName + "\n");
+            section.append('\n').append(SPRITE_INDENT).append("Sprite ").append(spriteNo)
+                .append(": ").append(project.getSpriteName(spriteIndex)).append('\n');
         }
-        Script[] scripts = sb2.getScriptsForSprite(spriteName);
+        int scriptCount = project.getScriptCount(spriteIndex);
         if (shouldReport(SCRIPTS_PER_SPRITE)) {
-            pw.write(tab + scripts.length + " scripts\n");
+            section.append(SPRITE_INDENT).append(scriptCount).append(" scripts\n");
         }
-        for (int i = 0; i < scripts.length; i++) {
-            reportScript(i + 1, scripts[i], pw);
+        for (int i = 0; i < scriptCount; i++) {
+            reportScript(i + 1, project.getScript(spriteIndex, i));
         }
     }
     /**
      * Report one Script from a Sprite project.
      * @param scriptNo The index of the Script in the list.  Starting from 1.
-     * @param script The script to report.
-     * @param pw The PrintWriter.
+     * @param analysis The analysis of the script to report.
      */
-    private void reportScript(int scriptNo, Script script, PrintWriter pw) {
-        String tab = TAB + TAB;
+    private void reportScript(int scriptNo, ScriptAnalysis analysis) {
         if (shouldReport(SCRIPT_HEADERS)) {
-            pw.write(tab + "Script " + scriptNo + "\n");
+            section.append(SCRIPT_INDENT).append("Script ").append(scriptNo).append('\n');
         }
-        tab = tab + TAB;
         if (shouldReport(SCRIPT_LENGTHS)) {
-            pw.write(tab + "length = " + script.getLength() + "\n");
+            section.append(SCRIPT_DETAIL_INDENT).append("length = ")
+                .append(analysis.getLength()).append('\n');
         }
         if (shouldReport(SCRIPT_BYCATTOT)) {
-            pw.write(tab + "blocks by category: "
-                     + blocksByCatString(script.sumBlocksByCategory()) + "\n");
+            section.append(SCRIPT_DETAIL_INDENT).append("blocks by category: ");
+            Arrays.fill(scriptBlocksByCat, 0);
+            analysis.addBlocksByCategory(scriptBlocksByCat);
+            appendBlocksByCat(scriptBlocksByCat);
+            section.append('\n');
         }
     }
     /**
-     * Produces a nice string representeing blocks by category.
+     * Appends a nice string representeing blocks by category.
      * @param blocksByCat Array containing block counts by category
-     * @return The nice string
      */
-    private String blocksByCatString(int[] blocksByCat) {
+    private void appendBlocksByCat(int[] blocksByCat) {
         String[] cats = ScriptSpecs.getCategories();
-        StringBuilder sb = new StringBuilder();
+        boolean any = false;
         for (int i = 0; i < cats.length; i++) {
             int sum = blocksByCat[i];
             if (sum > 0) {
-                if (sb.length() > 0) {
-                    sb.append("; ");
+                if (any) {
+                    section.append("; ");
                 }
-                sb.append(cats[i]);
-                sb.append(": ");
-                sb.append(sum);
+                section.append(cats[i]).append(": ").append(sum);
+                any = true;
             }
         }
-        if (sb.length() == 0) {
-            sb.append(0);
+        if (!any) {
+            section.append(0);
         }
-        return sb.toString();
+    }
+    /**
+     * Hand the section built so far to the PrintWriter, and start a new one.
+     * @param pw The PrintWriter.
+     */
+    private void writeSection(PrintWriter pw) {
+        pw.append(section);
+        section.setLength(0);
     }
 }
@@ -4,8 +4,10 @@ import java.nio.file.Paths;
 import java.nio.file.Path;
 import java.nio.file.Files;
 import java.io.File;
+import java.util.List;
 import java.util.stream.Collectors;
 import java.io.IOException;
+import java.security.MessageDigest;
 
 /**
  * @version 1.0
@@ -17,6 +19,8 @@ public class Sb2 {
     private static final String CORRUPT_JSON = "This project's data "
         + "is corrupt.\nThe project.json file in the .sb2 archive "
         + "is not parcable json text.";
+    private static final String TOO_LARGE = "This project is too "
+        + "large to report on.\n";
     private static final String IO_PROBLEM = "We failed to read this "
         + "project from disk.\nPlease try again.";
     private JSONObject stage;
@@ -24,25 +28,65 @@ public class Sb2 {
     private String name;
     private String errorMessage = null;
     private Script[] stageScripts;
+    private boolean allBlocks = false;
     /**
      * Construct an Sb2 object from a filePath.
      * @param filePath Path to sb2 file.
      */
     public Sb2(String filePath) {
+        this(filePath, ProjectLimits.DEFAULT);
+    }
+    /**
+     * Construct an Sb2 object from a filePath, giving up on projects over
+     * some limits.  A project over a limit gets an error message saying
+     * which.
+     * @param filePath Path to sb2 file.
+     * @param limits The limits on the project.
+     */
+    public Sb2(String filePath, ProjectLimits limits) {
+        this(filePath, limits, false);
+    }
+    /**
+     * Construct an Sb2 object from a filePath, giving up on projects over
+     * some limits, and optionally counting every block in its scripts.
+     * @param filePath Path to sb2 file.
+     * @param limits The limits on the project.
+     * @param allBlocks Whether scripts count the reporters given as
+     *     arguments, and not only the stack blocks.
+     */
+    public Sb2(String filePath, ProjectLimits limits, boolean allBlocks) {
+        this(filePath, limits, allBlocks, null);
+    }
+    /**
+     * Construct an Sb2 object from a filePath, also adding the bytes of its
+     * project.json to a digest as they are read.
+     * @param filePath Path to sb2 file.
+     * @param limits The limits on the project.
+     * @param allBlocks Whether scripts count the reporters given as
+     *     arguments, and not only the stack blocks.
+     * @param digest The digest to update, or null.
+     */
+    Sb2(String filePath, ProjectLimits limits, boolean allBlocks, MessageDigest digest) {
+        this.allBlocks = allBlocks;
         name = new File(filePath).getName();
-        String jsonString = "";
+        JSONObject jsonObject;
         try {
-            jsonString = Extractor.getProjectJSON(filePath);
+            jsonObject = Extractor.getProjectJSONObject(filePath, limits, digest);
+        } catch (ProjectLimitException e) {
+            errorMessage = TOO_LARGE + e.getMessage();
+            return;
         } catch (IOException e) {
             errorMessage = IO_PROBLEM;
             return;
+        } catch (org.json.JSONException e) {
+            errorMessage = CORRUPT_JSON;
+            return;
         }
-        if (jsonString == null) {
+        if (jsonObject == null) {
             errorMessage = NO_JSON;
             return;
-        } 
+        }
         try {
-            JSONObject jsonObject = createJSONObject(jsonString);
             configureWithJson(jsonObject);
         } catch (org.json.JSONException e) {
             errorMessage = CORRUPT_JSON;
@@ -54,7 +98,19 @@ public class Sb2 {
      * @param name The name for the Scratch project. Normally the name of the .sb2 file.
      */
     public Sb2(JSONObject stage, String name) {
+        this(stage, name, false);
+    }
+    /**
+     * Construct an Sb2 using a JSONObject and a name, optionally counting
+     * every block in its scripts.
+     * @param stage The JSONObject.
+     * @param name The name for the Scratch project.
+     * @param allBlocks Whether scripts count the reporters given as
+     *     arguments, and not only the stack blocks.
+     */
+    public Sb2(JSONObject stage, String name, boolean allBlocks) {
         this.name = name;
+        this.allBlocks = allBlocks;
         configureWithJson(stage);
     }
     /**
@@ -71,12 +127,14 @@ public class Sb2 {
      */
     public void configureWithJson(JSONObject stage) {
         this.stage = stage;
-        this.sprites = new Sprites(stage);
+        this.sprites = new Sprites(stage, allBlocks);
         extractStageScripts();
     }
 
     /**
-     * Return underlying JSONObject.
+     * Return underlying JSONObject.  For an Sb2 read from an .sb2 file this is
+     * the stage as pruned by {@code ProjectReader}: it holds only the parts of
+     * the project that Scatt reports on.
      * @return The underlying JSONObject
      */
     public JSONObject getJSONObject() {
@@ -96,7 +154,7 @@ public class Sb2 {
      */
     private void extractStageScripts() {
         JSONArray jsonArrayOfScriptTuples = stage.optJSONArray("scripts");
-        stageScripts = Script.getScriptArray(jsonArrayOfScriptTuples);
+        stageScripts = Script.getScriptArray(jsonArrayOfScriptTuples, allBlocks);
     }
     /**
      * Given a file path return a String of file contents.
@@ -143,11 +201,27 @@ public class Sb2 {
     /**
      * Each sprite has a unique name.
      * This method returns these names in a array of strings.
+     * Each call copies the names; use {@code getSortedSpriteNames} to read
+     * them without copying.
      * @return Array of sprite names.
      */
     public String[] getSpriteNames() {
         return sprites.getSpriteNames();
     }
+    /**
+     * The sprite names in sorted order, without copying.
+     * @return An unmodifiable list of the sprite names, sorted.
+     */
+    public List<String> getSortedSpriteNames() {
+        return sprites.getSortedSpriteNames();
+    }
+    /**
+     * The sprite names in the order the sprites were made.
+     * @return An unmodifiable list of the sprite names.
+     */
+    public List<String> getSpriteNamesInAuthoringOrder() {
+        return sprites.getSpriteNamesInAuthoringOrder();
+    }
     /**
      * Return the number of Scripts associated with a particular Sprite.
      * @param spriteName The name of the Sprite.
@@ -186,6 +260,23 @@ public class Sb2 {
         return variables.length();
     }
 
+    /**
+     * Whether the project could not be read from disk.  Unlike a missing or
+     * corrupt project.json, this may go away if the project is read again.
+     * @return whether reading the .sb2 file failed.
+     */
+    public boolean failedToRead() {
+        return IO_PROBLEM.equals(errorMessage);
+    }
+
+    /**
+     * Whether the project was over one of the limits it was read with.
+     * @return whether the project was too large to report on.
+     */
+    public boolean exceededLimits() {
+        return errorMessage != null && errorMessage.startsWith(TOO_LARGE);
+    }
+
     /**
      * If an error has occurred, return the error message to be printed in
      * the report.  Otherwise, return null.
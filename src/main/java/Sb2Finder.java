@@ -0,0 +1,160 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Finds the .sb2 files in a directory, and optionally in the directories
+ * inside it, the way an LMS export nests submissions.  Uses
+ * {@code Files.walkFileTree}, so directories with tens of thousands of
+ * entries are read without building a File for every entry up front.
+ * @version 1.0
+ * @author agent
+ */
+public class Sb2Finder {
+    /**
+     * Depth that only looks at the chosen directory itself.
+     */
+    public static final int FLAT = 1;
+    /**
+     * Depth with no limit.
+     */
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+    private static final String SB2_SUFFIX = ".sb2";
+    private final int maxDepth;
+    private final boolean followLinks;
+
+    /**
+     * Construct a finder.
+     * @param maxDepth How many directory levels to look in.  {@code FLAT}
+     *     looks only in the chosen directory.
+     * @param followLinks Whether to walk into directories that are symbolic
+     *     links.  Links that loop back on themselves are skipped.  Links to
+     *     .sb2 files are always found.
+     */
+    public Sb2Finder(int maxDepth, boolean followLinks) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("maxDepth must be at least 1");
+        }
+        this.maxDepth = maxDepth;
+        this.followLinks = followLinks;
+    }
+
+    /**
+     * Default constructor.  Looks only in the chosen directory.
+     */
+    public Sb2Finder() {
+        this(FLAT, false);
+    }
+
+    /**
+     * Find the .sb2 files under a directory, in report order: by path relative
+     * to {@code dir}, ignoring case.  In a flat directory this is simply by
+     * file name, ignoring case.
+     * @param dir The directory to look in.
+     * @return The .sb2 files in report order.
+     */
+    public File[] find(File dir) {
+        List<Found> found = new ArrayList<>();
+        Path root = dir.toPath();
+        walk(dir, file -> found.add(new Found(root.relativize(file.toPath()).toString()
+            .replace(File.separatorChar, '/'), file)));
+        Collections.sort(found);
+        File[] files = new File[found.size()];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = found.get(i).file;
+        }
+        return files;
+    }
+
+    /**
+     * Walk a directory and hand each .sb2 file to {@code onFound} as soon as
+     * it is found, in the order the file system lists them.  Directories that
+     * cannot be read are skipped.
+     * @param dir The directory to look in.
+     * @param onFound Called with each .sb2 file.
+     */
+    public void walk(File dir, Consumer<File> onFound) {
+        Set<FileVisitOption> options = followLinks
+            ? EnumSet.of(FileVisitOption.FOLLOW_LINKS)
+            : EnumSet.noneOf(FileVisitOption.class);
+        try {
+            Files.walkFileTree(dir.toPath(), options, maxDepth, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (isSb2(file, attrs)) {
+                        onFound.accept(file.toFile());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    if (!(e instanceof FileSystemLoopException) && file.equals(dir.toPath())) {
+                        throw new IllegalArgumentException("Cannot read " + dir, e);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read " + dir, e);
+        }
+    }
+
+    /**
+     * Whether a visited path is an .sb2 file.  At the depth limit
+     * directories are visited as files, so they have to be ruled out here.
+     * @param file The path.
+     * @param attrs Its attributes, as the walk read them.
+     * @return whether to report on it.
+     */
+    private static boolean isSb2(Path file, BasicFileAttributes attrs) {
+        Path name = file.getFileName();
+        if (name == null || !name.toString().endsWith(SB2_SUFFIX)) {
+            return false;
+        }
+        if (attrs.isSymbolicLink()) {
+            return Files.isRegularFile(file);
+        }
+        return attrs.isRegularFile();
+    }
+
+    /**
+     * A found file and its path relative to the directory searched.  Found
+     * files are sorted by path ignoring case, and paths that differ only in
+     * case by path, so the order does not depend on the order the directory
+     * lists them in.  Found files are only ever sorted, so the ordering is
+     * not matched by {@code equals}.
+     */
+    private static class Found implements Comparable<Found> {
+        private final String relativePath;
+        private final File file;
+
+        /**
+         * Constructor.
+         * @param relativePath Path relative to the directory searched.
+         * @param file The file.
+         */
+        Found(String relativePath, File file) {
+            this.relativePath = relativePath;
+            this.file = file;
+        }
+
+        @Override
+        public int compareTo(Found other) {
+            int compare = relativePath.compareToIgnoreCase(other.relativePath);
+            return compare != 0 ? compare : relativePath.compareTo(other.relativePath);
+        }
+    }
+}
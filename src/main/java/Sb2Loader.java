@@ -0,0 +1,387 @@
+import java.io.File;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Loads Sb2 objects from .sb2 files.  Each file is unzipped and parsed
+ * independently, so the work can be spread over several threads.  The
+ * loaded Sb2s always come back in the same order as the files given.
+ * Use {@code stream} rather than {@code loadAll} when the projects only need
+ * to be looked at once: it never holds more than a few projects at a time.
+ * @version 1.0
+ * @author agent
+ */
+public class Sb2Loader {
+    /**
+     * Worker count meaning "use the shared fork-join pool".
+     */
+    public static final int DEFAULT_WORKERS = 0;
+    private final int workerCount;
+    private ProjectLimits limits = ProjectLimits.DEFAULT;
+    private ForkJoinPool spritePool = null;
+    private boolean allBlocks = false;
+
+    /**
+     * Construct a loader.
+     * @param workerCount The number of threads to load with.  1 loads
+     *    everything on the calling thread.  {@code DEFAULT_WORKERS} (or any
+     *    number less than 1) uses {@code ForkJoinPool.commonPool()}.
+     */
+    public Sb2Loader(int workerCount) {
+        this.workerCount = workerCount;
+    }
+
+    /**
+     * Default constructor.  Loads on the shared fork-join pool.
+     */
+    public Sb2Loader() {
+        this(DEFAULT_WORKERS);
+    }
+
+    /**
+     * Return the configured worker count.
+     * @return the worker count.
+     */
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * Set the limits projects are read with.  A project over a limit is
+     * reported with an error, and the rest of the projects are still read.
+     * @param limits The limits.  Default {@code ProjectLimits.DEFAULT}.
+     */
+    public void setLimits(ProjectLimits limits) {
+        this.limits = limits;
+    }
+
+    /**
+     * Choose whether the sprites of each project are analysed in parallel
+     * on {@code ForkJoinPool.commonPool()}, as well as the projects.  This
+     * helps most when a few very large projects would hold up the end of the
+     * batch.  Off by default.
+     * @param parallelSprites whether to analyse sprites in parallel.
+     */
+    public void setParallelSprites(boolean parallelSprites) {
+        spritePool = parallelSprites ? ForkJoinPool.commonPool() : null;
+    }
+
+    /**
+     * Choose whether scripts count every block, the reporters given as
+     * arguments included, instead of only the stack blocks.  Off by
+     * default.  The analysis cache holds stack block counts, so summaries
+     * counting every block are neither read from nor added to it.
+     * @param allBlocks whether to count every block.
+     */
+    public void setAllBlocks(boolean allBlocks) {
+        this.allBlocks = allBlocks;
+    }
+
+    /**
+     * Load an Sb2 for each file.
+     * @param sb2Files The .sb2 files, in the order they should be reported.
+     * @return The Sb2s, in the same order as {@code sb2Files}.
+     */
+    public List<Sb2> loadAll(File[] sb2Files) {
+        List<Sb2> sb2s = new ArrayList<>(sb2Files.length);
+        if (workerCount == 1 || sb2Files.length < 2) {
+            for (File sb2File : sb2Files) {
+                sb2s.add(load(sb2File, limits, allBlocks));
+            }
+            return sb2s;
+        }
+        ExecutorService executor = createExecutor(sb2Files.length);
+        try {
+            List<Future<Sb2>> futures = new ArrayList<>(sb2Files.length);
+            for (File sb2File : sb2Files) {
+                futures.add(executor.submit(() -> load(sb2File, limits, allBlocks)));
+            }
+            for (Future<Sb2> future : futures) {
+                sb2s.add(await(future));
+            }
+        } finally {
+            if (executor != ForkJoinPool.commonPool()) {
+                executor.shutdownNow();
+            }
+        }
+        return sb2s;
+    }
+
+    /**
+     * Lazily load an Sb2 for each file.  The returned iterator keeps at most
+     * one project per worker loading ahead of the caller, and drops its
+     * reference to each Sb2 as soon as it is handed out, so memory use depends
+     * on the largest projects rather than on the number of files.  Once
+     * {@code hasNext} returns false, any threads the loader started are gone.
+     * @param sb2Files The .sb2 files, in the order they should be reported.
+     * @return An iterator over the Sb2s, in the same order as {@code sb2Files}.
+     */
+    public Iterator<Sb2> stream(File[] sb2Files) {
+        return stream(sb2Files, sb2File -> load(sb2File, limits, allBlocks));
+    }
+
+    /**
+     * Lazily summarize each file, the way {@code stream} loads them.  Loading
+     * and analysing both happen on the workers.  When a cache is given,
+     * unchanged files are summarized from the cache without opening the zip,
+     * and the summaries of the others are added to it.
+     * @param sb2Files The .sb2 files, in the order they should be reported.
+     * @param cache The cache to use, or null.
+     * @return An iterator over the summaries, in the same order as {@code sb2Files}.
+     */
+    public Iterator<ProjectSummary> streamSummaries(File[] sb2Files, AnalysisCache cache) {
+        if (allBlocks) {
+            return stream(sb2Files,
+                sb2File -> ProjectSummary.of(load(sb2File, limits, true), spritePool));
+        }
+        return stream(sb2Files, sb2File -> summarize(sb2File, cache, limits, spritePool));
+    }
+
+    /**
+     * Lazily run a task for each file, in order, with a bounded look-ahead.
+     * @param sb2Files The .sb2 files.
+     * @param task What to do with each file.
+     * @param <T> The result type of the task.
+     * @return An iterator over the results, in the same order as {@code sb2Files}.
+     */
+    private <T> Iterator<T> stream(File[] sb2Files, Function<File, T> task) {
+        if (workerCount == 1 || sb2Files.length < 2) {
+            return new SequentialIterator<>(sb2Files, task);
+        }
+        return new LookAheadIterator<>(sb2Files, task, createExecutor(sb2Files.length));
+    }
+
+    /**
+     * Summarize a single file, through the cache if there is one, within
+     * the default limits.
+     * @param sb2File The .sb2 file.
+     * @param cache The cache to use, or null.
+     * @return The summary.
+     */
+    static ProjectSummary summarize(File sb2File, AnalysisCache cache) {
+        return summarize(sb2File, cache, ProjectLimits.DEFAULT);
+    }
+
+    /**
+     * Summarize a single file, through the cache if there is one.  Projects
+     * that could not be read, or were over the limits, are not cached, so
+     * they are read again next time.
+     * @param sb2File The .sb2 file.
+     * @param cache The cache to use, or null.
+     * @param limits The limits to read the project with.
+     * @return The summary.
+     */
+    static ProjectSummary summarize(File sb2File, AnalysisCache cache, ProjectLimits limits) {
+        return summarize(sb2File, cache, limits, null);
+    }
+
+    /**
+     * Summarize a single file, through the cache if there is one, analysing
+     * its sprites on a fork-join pool.
+     * @param sb2File The .sb2 file.
+     * @param cache The cache to use, or null.
+     * @param limits The limits to read the project with.
+     * @param spritePool The pool to analyse sprites on, or null.
+     * @return The summary.
+     */
+    static ProjectSummary summarize(File sb2File, AnalysisCache cache, ProjectLimits limits,
+                                    ForkJoinPool spritePool) {
+        long size = sb2File.length();
+        long modified = sb2File.lastModified();
+        ProjectSummary summary = cache == null ? null : cache.get(sb2File, limits);
+        if (summary == null) {
+            MessageDigest digest = cache == null ? null : AnalysisCache.newDigest();
+            Sb2 sb2 = new Sb2(sb2File.getAbsolutePath(), limits, false, digest);
+            summary = ProjectSummary.of(sb2, spritePool);
+            if (cache != null && !sb2.failedToRead() && !sb2.exceededLimits()) {
+                cache.put(sb2File, size, modified, limits, digest.digest(), summary);
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Load a single Sb2 within some limits.
+     * @param sb2File The .sb2 file.
+     * @param limits The limits to read the project with.
+     * @return The Sb2.
+     */
+    static Sb2 load(File sb2File, ProjectLimits limits) {
+        return load(sb2File, limits, false);
+    }
+
+    /**
+     * Load a single Sb2 within some limits, optionally counting every block.
+     * @param sb2File The .sb2 file.
+     * @param limits The limits to read the project with.
+     * @param allBlocks Whether scripts count every block.
+     * @return The Sb2.
+     */
+    static Sb2 load(File sb2File, ProjectLimits limits, boolean allBlocks) {
+        return new Sb2(sb2File.getAbsolutePath(), limits, allBlocks);
+    }
+
+    /**
+     * Pick the executor to load with.  Threads of a new pool are daemons, so a
+     * caller that stops iterating part way through cannot keep the JVM alive.
+     * @param taskCount The number of files to load.
+     * @return The common pool, or a new fixed pool the caller must shut down.
+     */
+    ExecutorService createExecutor(int taskCount) {
+        if (workerCount < 1) {
+            return ForkJoinPool.commonPool();
+        }
+        return Executors.newFixedThreadPool(Math.min(workerCount, taskCount), runnable -> {
+            Thread thread = new Thread(runnable, "Sb2Loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Wait for a load to finish.  Unchecked exceptions thrown while loading
+     * are rethrown as they were.
+     * @param future The pending load.
+     * @param <T> The result type of the load.
+     * @return The result of the load.
+     */
+    static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading projects.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Runs the task for each file on the calling thread when it is asked for.
+     * @param <T> The result type of the task.
+     */
+    private static class SequentialIterator<T> implements Iterator<T> {
+        private final File[] sb2Files;
+        private final Function<File, T> task;
+        private int next = 0;
+
+        /**
+         * Constructor.
+         * @param sb2Files The files to load.
+         * @param task What to do with each file.
+         */
+        SequentialIterator(File[] sb2Files, Function<File, T> task) {
+            this.sb2Files = sb2Files;
+            this.task = task;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < sb2Files.length;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return task.apply(sb2Files[next++]);
+        }
+    }
+
+    /**
+     * Keeps a bounded window of tasks running on an executor.
+     * @param <T> The result type of the task.
+     */
+    private class LookAheadIterator<T> implements Iterator<T> {
+        private final File[] sb2Files;
+        private final Function<File, T> task;
+        private final ExecutorService executor;
+        private final Deque<Future<T>> pending = new ArrayDeque<>();
+        private final int window;
+        private int nextToSubmit = 0;
+
+        /**
+         * Constructor.  Starts the first window of loads.
+         * @param sb2Files The files to load.
+         * @param task What to do with each file.
+         * @param executor The executor to load on.
+         */
+        LookAheadIterator(File[] sb2Files, Function<File, T> task, ExecutorService executor) {
+            this.sb2Files = sb2Files;
+            this.task = task;
+            this.executor = executor;
+            if (executor instanceof ForkJoinPool) {
+                window = ((ForkJoinPool) executor).getParallelism() + 1;
+            } else {
+                window = workerCount + 1;
+            }
+            fill();
+        }
+
+        /**
+         * Submit loads until the window is full or every file is submitted.
+         */
+        private void fill() {
+            while (pending.size() < window && nextToSubmit < sb2Files.length) {
+                File sb2File = sb2Files[nextToSubmit++];
+                pending.addLast(executor.submit(() -> task.apply(sb2File)));
+            }
+            if (pending.isEmpty()) {
+                shutdown();
+            }
+        }
+
+        /**
+         * Stop the executor if it belongs to this iterator.
+         */
+        private void shutdown() {
+            if (executor != ForkJoinPool.commonPool()) {
+                executor.shutdownNow();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !pending.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T result;
+            try {
+                result = await(pending.removeFirst());
+            } catch (RuntimeException | Error e) {
+                for (Future<T> future : pending) {
+                    future.cancel(true);
+                }
+                pending.clear();
+                shutdown();
+                throw e;
+            }
+            fill();
+            return result;
+        }
+    }
+}
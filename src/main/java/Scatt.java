@@ -1,9 +1,5 @@
 import java.io.File;
-import java.io.FilenameFilter;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Arrays;
-import java.util.Comparator;
+import java.io.IOException;
 
 /**
  * @version 1.0
@@ -13,9 +9,16 @@ import java.util.Comparator;
  * @author Erik Cole
  */
 public class Scatt {
+    /**
+     * System property naming the analysis cache file of the file chooser.
+     */
+    public static final String CACHE_PROPERTY = "scatt.cache";
     private final File sb2Dir;
     private final Notifier notifier;
     private int reporterFlags;
+    private int workerCount = Sb2Loader.DEFAULT_WORKERS;
+    private AnalysisCache analysisCache = null;
+    private Sb2Finder sb2Finder = new Sb2Finder();
 
     /**
      * Constructor for production use.  Uses a GuiFileChooser for
@@ -49,11 +52,49 @@ public class Scatt {
         this.notifier = notifier;
     }
     /**
-     * Just a dummy main method for now.
+     * Set the number of threads used to load projects.
+     * @param workerCount 1 loads projects one after another.  Less than 1
+     *    uses the shared fork-join pool, which is the default.
+     */
+    public void setWorkerCount(int workerCount) {
+        this.workerCount = workerCount;
+    }
+    /**
+     * Use a persistent cache of project analyses.  Projects that have not
+     * changed since they were cached are reported without being read again.
+     * @param analysisCache The cache, or null to read every project.
+     */
+    public void setAnalysisCache(AnalysisCache analysisCache) {
+        this.analysisCache = analysisCache;
+    }
+    /**
+     * Choose how .sb2 files are found.  By default only the chosen directory
+     * is searched; a finder with a greater depth also reports on projects in
+     * the directories inside it.
+     * @param sb2Finder The finder to use.
+     */
+    public void setSb2Finder(Sb2Finder sb2Finder) {
+        this.sb2Finder = sb2Finder;
+    }
+    /**
+     * Start Scatt.  With no arguments, asks for a directory with a file
+     * chooser.  With arguments, runs the command line interface in
+     * {@code ScattCli} without loading any GUI classes.  The file chooser
+     * keeps no analysis cache unless the {@code scatt.cache} system
+     * property names a cache file.
      * @param args command line arguments
      */
     public static void main(String... args) {
+        if (args.length > 0) {
+            ScattCli.main(args);
+            return;
+        }
         Scatt sc = new Scatt();
+        String cachePath = System.getProperty(CACHE_PROPERTY);
+        if (cachePath != null) {
+            sc.setAnalysisCache(AnalysisCache.open(new File(cachePath),
+                AnalysisCache.DEFAULT_MAX_BYTES));
+        }
         sc.generateReport();
     }
 
@@ -65,35 +106,19 @@ public class Scatt {
             throw new IllegalArgumentException("User clicked cancel or for "
                 + "some other reason file chosen is null.");
         }
-        File[] sb2Files = sb2Dir.listFiles(new FilenameFilter() {
-            @Override
-            public boolean accept(File dir, String name) {
-                return name.matches(".*\\.sb2");
-            }
-        });
-        Arrays.sort(sb2Files, new FileComparator());
-        List<Sb2> sb2s = new ArrayList<>();
-        for (int i = 0; i < sb2Files.length; i++) {
-            String sb2path = sb2Files[i].getAbsolutePath();
-            sb2s.add(new Sb2(sb2path));
-        }
+        File[] sb2Files = sb2Finder.find(sb2Dir);
         String reportPath = new File(sb2Dir, sb2Dir.getName()
             + Reporter.REPORT_SUFFIX).getAbsolutePath();
         Reporter reporter = new Reporter(reporterFlags);
-        reporter.writeReport(reportPath, sb2s);
-        notifier.notify("Report generated at " + reportPath);
-    }
-    /**
-     * We need an OS neutral way to sort files for testing purposes.
-     **/
-    class FileComparator implements Comparator<File> {
-        @Override
-        public int compare(File f1, File f2) {
-            return f1.getName().compareToIgnoreCase(f2.getName());
-        }
-        @Override
-        public boolean equals(Object other) {
-            return this == other;
+        reporter.writeSummaries(reportPath, sb2Files.length,
+            new Sb2Loader(workerCount).streamSummaries(sb2Files, analysisCache));
+        if (analysisCache != null) {
+            try {
+                analysisCache.save();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
+        notifier.notify("Report generated at " + reportPath);
     }
 }
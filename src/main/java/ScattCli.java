@@ -0,0 +1,582 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The command line interface to Scatt, for running reports from scripts and
+ * cron jobs on machines with no display.  Nothing here touches Swing or AWT,
+ * so it starts quickly and works on headless machines.
+ * Run {@code scatt --help} for the options.
+ * @version 1.0
+ * @author agent
+ */
+public class ScattCli {
+    /**
+     * Exit status when the report was written.
+     */
+    public static final int EXIT_OK = 0;
+    /**
+     * Exit status when an input could not be found or the report could not
+     * be written.
+     */
+    public static final int EXIT_FAILED = 1;
+    /**
+     * Exit status when the arguments could not be understood.
+     */
+    public static final int EXIT_USAGE = 2;
+    private static final String STDOUT = "-";
+    private static final String TEXT_FORMAT = "text";
+    private static final String METRICS_FORMAT = "metrics";
+    private static final Map<String, String> FORMAT_EXTENSIONS = getFormatExtensions();
+    private static final Map<String, Integer> FLAG_NAMES = getFlagNames();
+    private static final String USAGE = String.join("\n",
+        "Usage: scatt [options] <directory or .sb2 file>...",
+        "Writes a report on every .sb2 file given, and on the .sb2 files in every",
+        "directory given.",
+        "",
+        "Options:",
+        "  -o, --output <file>     Write the report to <file> instead of standard output.",
+        "  -f, --flags <flags>     What to report: a comma separated list of flag names",
+        "                          or numbers, combined.  Default REPORT_ALL.",
+        "  -s, --summary           End the text report with statistics over every",
+        "                          project: script lengths and blocks by category.",
+        "  -d, --duplicates        End the text report with the scripts that are the",
+        "                          same, or nearly the same, in different projects.",
+        "      --authoring-order   List each project's sprites in the order they were",
+        "                          made instead of by name.",
+        "  -i, --incremental       With -o, only rewrite the sections of projects that",
+        "                          changed since the last run.  Keeps an index in",
+        "                          <file>" + IncrementalReportWriter.INDEX_SUFFIX + ".",
+        "  -j, --workers <n>       Threads used to read projects.  1 reads them one",
+        "                          after another; 0 shares the common pool.  Default 0.",
+        "      --all-blocks        Count every block, the reporters given to other",
+        "                          blocks included, not only the stack blocks.",
+        "      --parallel-sprites  Also analyse the sprites of each project in",
+        "                          parallel, for very large projects.",
+        "      --format <formats>  Comma separated report formats: text, jsonl (JSON",
+        "                          Lines), csv or metrics (binary columns of script",
+        "                          metrics, needs -o).  Default text.  With more than",
+        "                          one, -o names the files, and each gets the format's",
+        "                          extension added, such as report.csv.",
+        "  -r, --recursive         Also look for .sb2 files in subdirectories.",
+        "      --max-depth <n>     How many directory levels to look in.  Implies -r.",
+        "      --follow-links      Walk into symbolically linked directories.",
+        "      --cache <file>      Keep analyses in <file>, and reuse them on the next",
+        "                          run for projects that have not changed.  By",
+        "                          default nothing is kept.",
+        "      --no-cache          Read every project, and keep nothing.  The default.",
+        "      --max-bytes <n>     Report a project as too large if its project.json",
+        "                          has more than <n> bytes.  Default "
+            + ProjectLimits.DEFAULT_MAX_BYTES + ".",
+        "      --max-nesting <n>   Likewise if its json nests more than <n> deep.",
+        "                          Default " + ProjectLimits.DEFAULT_MAX_DEPTH + ".",
+        "      --max-blocks <n>    Likewise if its scripts have more than <n> blocks.",
+        "                          Default " + ProjectLimits.DEFAULT_MAX_BLOCKS + ".",
+        "  -w, --watch             Keep running, and update the report each time a",
+        "                          project in the one directory given changes.  The",
+        "                          report goes next to the projects unless -o is given.",
+        "  -h, --help              Print this message.",
+        "",
+        "Flag names: " + String.join(", ", FLAG_NAMES.keySet()));
+
+    private final PrintStream out;
+    private final PrintStream err;
+    private final List<File> inputs = new ArrayList<>();
+    private int reporterFlags = Reporter.REPORT_ALL;
+    private String outputPath = STDOUT;
+    private List<String> formats = Collections.singletonList(TEXT_FORMAT);
+    private int workerCount = Sb2Loader.DEFAULT_WORKERS;
+    private int maxDepth = Sb2Finder.FLAT;
+    private boolean followLinks = false;
+    private File cacheFile = null;
+    private int maxBytes = (int) ProjectLimits.DEFAULT_MAX_BYTES;
+    private int maxNesting = ProjectLimits.DEFAULT_MAX_DEPTH;
+    private int maxBlocks = ProjectLimits.DEFAULT_MAX_BLOCKS;
+    private boolean summary = false;
+    private boolean duplicates = false;
+    private boolean authoringOrder = false;
+    private boolean parallelSprites = false;
+    private boolean allBlocks = false;
+    private boolean incremental = false;
+    private boolean watch = false;
+    private boolean help = false;
+
+    /**
+     * Constructor.
+     * @param out Where the report goes when no output file is given, and
+     *     where messages to the user go.
+     * @param err Where errors go.
+     */
+    public ScattCli(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    /**
+     * Run Scatt from the command line and exit with the status of the run.
+     * @param args command line arguments
+     */
+    public static void main(String... args) {
+        System.exit(new ScattCli(System.out, System.err).run(args));
+    }
+
+    /**
+     * Parse the arguments and write the report.
+     * @param args command line arguments
+     * @return The exit status: {@code EXIT_OK}, {@code EXIT_FAILED} or
+     *     {@code EXIT_USAGE}.
+     */
+    public int run(String... args) {
+        try {
+            parse(args);
+        } catch (IllegalArgumentException e) {
+            err.println("scatt: " + e.getMessage());
+            err.println(USAGE);
+            return EXIT_USAGE;
+        }
+        if (help) {
+            out.println(USAGE);
+            return EXIT_OK;
+        }
+        AnalysisCache analysisCache = cacheFile == null
+            ? null : AnalysisCache.open(cacheFile, AnalysisCache.DEFAULT_MAX_BYTES);
+        if (watch) {
+            return watch(analysisCache);
+        }
+        File[] sb2Files;
+        try {
+            sb2Files = findSb2Files();
+        } catch (IllegalArgumentException e) {
+            err.println("scatt: " + e.getMessage());
+            return EXIT_FAILED;
+        }
+        int status = writeReport(sb2Files, analysisCache);
+        if (analysisCache != null) {
+            try {
+                analysisCache.save();
+            } catch (IOException e) {
+                err.println("scatt: could not save the cache " + cacheFile + ": " + e);
+            }
+        }
+        return status;
+    }
+
+    /**
+     * Read the arguments into the fields.
+     * @param args command line arguments
+     */
+    private void parse(String... args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "-o":
+                case "--output":
+                case "-f":
+                case "--flags":
+                case "-j":
+                case "--workers":
+                case "--format":
+                case "--max-depth":
+                case "--cache":
+                case "--max-bytes":
+                case "--max-nesting":
+                case "--max-blocks":
+                    parseValue(arg, getValue(args, ++i, arg));
+                    break;
+                case "-s":
+                case "--summary":
+                    summary = true;
+                    break;
+                case "-d":
+                case "--duplicates":
+                    duplicates = true;
+                    break;
+                case "--authoring-order":
+                    authoringOrder = true;
+                    break;
+                case "-i":
+                case "--incremental":
+                    incremental = true;
+                    break;
+                case "--all-blocks":
+                    allBlocks = true;
+                    break;
+                case "--parallel-sprites":
+                    parallelSprites = true;
+                    break;
+                case "-r":
+                case "--recursive":
+                    maxDepth = Sb2Finder.UNLIMITED;
+                    break;
+                case "--follow-links":
+                    followLinks = true;
+                    break;
+                case "--no-cache":
+                    cacheFile = null;
+                    break;
+                case "-w":
+                case "--watch":
+                    watch = true;
+                    break;
+                case "-h":
+                case "--help":
+                    help = true;
+                    break;
+                default:
+                    if (arg.startsWith("-")) {
+                        throw new IllegalArgumentException("unknown option " + arg);
+                    }
+                    inputs.add(new File(arg));
+            }
+        }
+        validate();
+    }
+
+    /**
+     * Read the value of an option that takes one into its field.
+     * @param option The option.
+     * @param value The value given to it.
+     */
+    private void parseValue(String option, String value) {
+        switch (option) {
+            case "-o":
+            case "--output":
+                outputPath = value;
+                break;
+            case "-f":
+            case "--flags":
+                reporterFlags = parseFlags(value);
+                break;
+            case "-j":
+            case "--workers":
+                workerCount = parseInt(value, option);
+                break;
+            case "--format":
+                formats = parseFormats(value);
+                break;
+            case "--max-depth":
+                maxDepth = parsePositiveInt(value, option);
+                break;
+            case "--cache":
+                cacheFile = new File(value);
+                break;
+            case "--max-bytes":
+                maxBytes = parsePositiveInt(value, option);
+                break;
+            case "--max-nesting":
+                maxNesting = parsePositiveInt(value, option);
+                break;
+            case "--max-blocks":
+                maxBlocks = parsePositiveInt(value, option);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown option " + option);
+        }
+    }
+
+    /**
+     * Check that the options given make sense together.
+     */
+    private void validate() {
+        if (inputs.isEmpty() && !help) {
+            throw new IllegalArgumentException("no directory or .sb2 file given");
+        }
+        if (incremental && STDOUT.equals(outputPath)) {
+            throw new IllegalArgumentException("--incremental needs an output file");
+        }
+        if (formats.size() > 1 && STDOUT.equals(outputPath)) {
+            throw new IllegalArgumentException("more than one format needs an output file");
+        }
+        if (formats.contains(METRICS_FORMAT) && STDOUT.equals(outputPath)) {
+            throw new IllegalArgumentException("the metrics format needs an output file");
+        }
+        if ((incremental || watch) && !formats.equals(Collections.singletonList(TEXT_FORMAT))) {
+            throw new IllegalArgumentException("--incremental and --watch only write text");
+        }
+        if ((incremental || watch) && (summary || duplicates)) {
+            throw new IllegalArgumentException("--summary and --duplicates cannot be kept up "
+                + "to date by --incremental or --watch");
+        }
+        if (authoringOrder && !formats.equals(Collections.singletonList(TEXT_FORMAT))) {
+            throw new IllegalArgumentException("--authoring-order only applies to the text "
+                + "format; the other formats number sprites by name");
+        }
+        if ((incremental || watch) && (authoringOrder || allBlocks)) {
+            throw new IllegalArgumentException("--authoring-order and --all-blocks cannot be "
+                + "used with --incremental or --watch");
+        }
+        if (watch && (inputs.size() != 1 || maxDepth != Sb2Finder.FLAT)) {
+            throw new IllegalArgumentException("--watch takes one directory, without -r");
+        }
+    }
+
+    /**
+     * The value that follows an option.
+     * @param args command line arguments
+     * @param index The index of the value.
+     * @param option The option, for the error message.
+     * @return The value.
+     */
+    private static String getValue(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException(option + " needs a value");
+        }
+        return args[index];
+    }
+
+    /**
+     * Parse a whole number given to an option.
+     * @param value The number.
+     * @param option The option, for the error message.
+     * @return The number.
+     */
+    private static int parseInt(String value, String option) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " needs a number, not " + value);
+        }
+    }
+
+    /**
+     * Parse a whole number of at least 1 given to an option.
+     * @param value The number.
+     * @param option The option, for the error message.
+     * @return The number.
+     */
+    private static int parsePositiveInt(String value, String option) {
+        int number = parseInt(value, option);
+        if (number < 1) {
+            throw new IllegalArgumentException(option + " must be at least 1");
+        }
+        return number;
+    }
+
+    /**
+     * Parse report formats.
+     * @param value Comma separated format names.
+     * @return The formats, without repeats, in the order given.
+     */
+    private static List<String> parseFormats(String value) {
+        List<String> formats = new ArrayList<>();
+        for (String part : value.split(",")) {
+            String format = part.trim().toLowerCase(Locale.ROOT);
+            if (!FORMAT_EXTENSIONS.containsKey(format)) {
+                throw new IllegalArgumentException("unknown format " + part.trim());
+            }
+            if (!formats.contains(format)) {
+                formats.add(format);
+            }
+        }
+        return formats;
+    }
+
+    /**
+     * The report formats, and the extension each adds to the output file
+     * when more than one is written.
+     * @return The extensions by format name.
+     */
+    private static Map<String, String> getFormatExtensions() {
+        Map<String, String> extensions = new LinkedHashMap<>();
+        extensions.put(TEXT_FORMAT, "txt");
+        extensions.put("jsonl", "jsonl");
+        extensions.put("csv", "csv");
+        extensions.put(METRICS_FORMAT, "metrics");
+        return Collections.unmodifiableMap(extensions);
+    }
+
+    /**
+     * Make the sink for one report format.
+     * @param format The format.
+     * @param reporter The Reporter, whose flags every format follows.
+     * @param pw Where the sink writes.
+     * @return The sink.
+     */
+    private static ReportSink createSink(String format, Reporter reporter, PrintWriter pw) {
+        switch (format) {
+            case "jsonl":
+                return new JsonLinesReportSink(reporter.getWhatToReport(), pw);
+            case "csv":
+                return new CsvReportSink(reporter.getWhatToReport(), pw);
+            default:
+                return new TextReportSink(reporter, pw);
+        }
+    }
+
+    /**
+     * Parse report flags.  Each comma separated part is the name of one of
+     * Reporter's flag constants, in any case, or a number such as
+     * {@code 0x7f}.  The parts are combined.
+     * @param flags The flags.
+     * @return The bit vector to give the Reporter.
+     */
+    static int parseFlags(String flags) {
+        int bits = 0;
+        for (String part : flags.split(",")) {
+            String name = part.trim().toUpperCase(Locale.ROOT);
+            Integer named = FLAG_NAMES.get(name);
+            if (named != null) {
+                bits |= named;
+                continue;
+            }
+            try {
+                bits |= Long.decode(name).intValue();
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("unknown report flag " + part.trim());
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * The names of Reporter's flag constants.
+     * @return The flags by name, in the order Reporter declares them.
+     */
+    private static Map<String, Integer> getFlagNames() {
+        Map<String, Integer> names = new LinkedHashMap<>();
+        for (Field field : Reporter.class.getFields()) {
+            int modifiers = field.getModifiers();
+            if (field.getType() == int.class && Modifier.isStatic(modifiers)
+                && Modifier.isFinal(modifiers)) {
+                try {
+                    names.put(field.getName(), field.getInt(null));
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+        return Collections.unmodifiableMap(names);
+    }
+
+    /**
+     * Find the .sb2 files to report on: the files given, and those found in
+     * the directories given, in the order they were given.
+     * @return The files.
+     */
+    private File[] findSb2Files() {
+        Sb2Finder finder = new Sb2Finder(maxDepth, followLinks);
+        List<File> sb2Files = new ArrayList<>();
+        for (File input : inputs) {
+            if (input.isDirectory()) {
+                sb2Files.addAll(Arrays.asList(finder.find(input)));
+            } else if (input.isFile()) {
+                sb2Files.add(input);
+            } else {
+                throw new IllegalArgumentException("no such file or directory " + input);
+            }
+        }
+        return sb2Files.toArray(new File[sb2Files.size()]);
+    }
+
+    /**
+     * Keep the report on the one directory given up to date until the
+     * process is stopped.
+     * @param analysisCache The cache to use, or null.
+     * @return The exit status.
+     */
+    private int watch(AnalysisCache analysisCache) {
+        File sb2Dir = inputs.get(0);
+        if (!sb2Dir.isDirectory()) {
+            err.println("scatt: no such directory " + sb2Dir);
+            return EXIT_FAILED;
+        }
+        File reportFile = STDOUT.equals(outputPath)
+            ? new File(sb2Dir, sb2Dir.getAbsoluteFile().getName() + Reporter.REPORT_SUFFIX)
+            : new File(outputPath);
+        try (ReportWatcher watcher = new ReportWatcher(sb2Dir, reportFile,
+                new Reporter(reporterFlags), out::println)) {
+            watcher.setWorkerCount(workerCount);
+            watcher.setAnalysisCache(analysisCache);
+            watcher.setLimits(new ProjectLimits(maxBytes, maxNesting, maxBlocks));
+            watcher.run();
+        } catch (IOException e) {
+            err.println("scatt: could not watch " + sb2Dir + ": " + e.getMessage());
+            return EXIT_FAILED;
+        }
+        return EXIT_OK;
+    }
+
+    /**
+     * Write the report to the output.
+     * @param sb2Files The projects to report on.
+     * @param analysisCache The cache to use, or null.
+     * @return The exit status.
+     */
+    private int writeReport(File[] sb2Files, AnalysisCache analysisCache) {
+        Reporter reporter = new Reporter(reporterFlags);
+        reporter.setReportSummary(summary);
+        reporter.setReportDuplicates(duplicates);
+        reporter.setAuthoringOrder(authoringOrder);
+        Sb2Loader loader = new Sb2Loader(workerCount);
+        loader.setLimits(new ProjectLimits(maxBytes, maxNesting, maxBlocks));
+        loader.setParallelSprites(parallelSprites);
+        loader.setAllBlocks(allBlocks);
+        if (STDOUT.equals(outputPath)) {
+            PrintWriter pw = Reporter.openReport(out);
+            ReportSink.writeAll(createSink(formats.get(0), reporter, pw), sb2Files.length,
+                loader.streamSummaries(sb2Files, analysisCache));
+            return pw.checkError() ? EXIT_FAILED : EXIT_OK;
+        }
+        if (incremental) {
+            File reportFile = new File(outputPath);
+            List<ProjectSummary> summaries = new ArrayList<>();
+            loader.streamSummaries(sb2Files, analysisCache).forEachRemaining(summaries::add);
+            try {
+                new IncrementalReportWriter(reporter, reportFile).write(summaries);
+            } catch (IOException e) {
+                err.println("scatt: could not write " + reportFile + ": " + e.getMessage());
+                return EXIT_FAILED;
+            }
+            out.println("Report generated at " + reportFile.getAbsolutePath());
+            return EXIT_OK;
+        }
+        File[] reportFiles = new File[formats.size()];
+        PrintWriter[] writers = new PrintWriter[formats.size()];
+        ReportSink[] sinks = new ReportSink[formats.size()];
+        int status = EXIT_OK;
+        try {
+            for (int i = 0; i < reportFiles.length; i++) {
+                String format = formats.get(i);
+                reportFiles[i] = new File(reportFiles.length == 1
+                    ? outputPath : outputPath + "." + FORMAT_EXTENSIONS.get(format));
+                if (METRICS_FORMAT.equals(format)) {
+                    sinks[i] = new ScriptMetricsWriter(reportFiles[i]);
+                } else {
+                    writers[i] = Reporter.openReport(reportFiles[i]);
+                    sinks[i] = createSink(format, reporter, writers[i]);
+                }
+            }
+            ReportSink.writeAll(new MultiReportSink(sinks), sb2Files.length,
+                loader.streamSummaries(sb2Files, analysisCache));
+        } catch (IOException | UncheckedIOException e) {
+            err.println("scatt: could not write: " + e.getMessage());
+            status = EXIT_FAILED;
+        } finally {
+            for (PrintWriter pw : writers) {
+                if (pw != null) {
+                    pw.close();
+                }
+            }
+        }
+        for (int i = 0; i < reportFiles.length && status == EXIT_OK; i++) {
+            if (writers[i] != null && writers[i].checkError()) {
+                err.println("scatt: could not write " + reportFiles[i]);
+                status = EXIT_FAILED;
+            } else {
+                out.println("Report generated at " + reportFiles[i].getAbsolutePath());
+            }
+        }
+        return status;
+    }
+}
@@ -1,12 +1,12 @@
 import org.json.JSONArray;
-import java.util.Map;
 /**
  * @author B. Clint Hall
  * @version 1
  */
 public class Script {
     private final static int INDEX_OF_BLOCK_TUPLE_ARRAY_IN_SCRIPT_TUPLE = 2;
-    private JSONArray blocks = null;
+    private final BlockTree blockTree;
+    private volatile ScriptAnalysis analysis = null;
 
     /**
      * Constructs a script from a script tuple.
@@ -14,13 +14,43 @@ public class Script {
      *      and a JSONArray of blocks.
      */
     public Script(JSONArray scriptTuple) {
-
+        this(scriptTuple, false);
+    }
+    /**
+     * Constructs a script from a script tuple, optionally counting every
+     * block: the reporters given as arguments too, not just the stack blocks.
+     * @param scriptTuple A JSONArray containing an X coordinate, a Y coordinate
+     *      and a JSONArray of blocks.
+     * @param allBlocks Whether to count every block.  See
+     *      {@code BlockTree.fromBlocks(JSONArray, boolean)}.
+     */
+    public Script(JSONArray scriptTuple, boolean allBlocks) {
+        JSONArray blocks = null;
         if (scriptTuple != null) {
             blocks = scriptTuple.optJSONArray(INDEX_OF_BLOCK_TUPLE_ARRAY_IN_SCRIPT_TUPLE);
         }
-        if (blocks == null) {
-            blocks = new JSONArray();
+        blockTree = BlockTree.fromBlocks(blocks, allBlocks);
+    }
+    /**
+     * Return the compact form of this script's blocks.
+     * @return the BlockTree.
+     */
+    public BlockTree getBlockTree() {
+        return blockTree;
+    }
+    /**
+     * Return the analysis of this script.  It is computed the first time it
+     * is asked for and then kept.  ScriptAnalysis is immutable, so if two
+     * threads race to compute it they get equal results.
+     * @return the ScriptAnalysis.
+     */
+    public ScriptAnalysis getAnalysis() {
+        ScriptAnalysis result = analysis;
+        if (result == null) {
+            result = ScriptAnalysis.analyze(blockTree);
+            analysis = result;
         }
+        return result;
     }
     /**
      * Counts the number of blocks of each type for this script
@@ -29,9 +59,7 @@ public class Script {
      * of {@code ScriptSpecs.getCommandsByType}.
      */
     public int[] sumBlocksByCategory() {
-        int[] blocksByCategory = new int[ScriptSpecs.getCategories().length];
-        sumBlocksByCategory(blocksByCategory);
-        return blocksByCategory;
+        return getAnalysis().getBlocksByCategory();
     }
     /**
      * Counts the number of blocks of each type for this script
@@ -41,60 +69,21 @@ public class Script {
      * will be incremented for each block of corresponding type.
      */
     public void sumBlocksByCategory(int[] blocksByCategory) {
-        sumBlocksByCategory(blocks, blocksByCategory);
+        getAnalysis().addBlocksByCategory(blocksByCategory);
     }
     /**
      * Get the number of blocks in the script.
      * @return the number of blocks in the script.
      */
     public int getLength() {
-        int[] blocksByCat = sumBlocksByCategory();
-        int length = 0;
-        for (int count : blocksByCat) {
-            length += count;
-        }
-        return length;
+        return getAnalysis().getLength();
     }
     /**
-     * Counts the number of blocks of each type in a JSONArray
-     * of block tuples and adds them into {@code blocksByCategory}.
-     * @param blocks A JSONArray of JSONArrays.  This is how scripts are
-     *          represented in the project.json files inside .sb2 files.
-     * @param blocksByCategory The array in which to increment block
-     * counts by type.
+     * Get how deeply blocks are nested inside C-blocks in the script.
+     * @return the deepest nesting of C-blocks.
      */
-    private static void sumBlocksByCategory(JSONArray blocks, int[] blocksByCategory) {
-        Map<String, Integer> commandsByType = ScriptSpecs.getCommandsByType();
-        for (int j = 0; j < blocks.length(); j++) {
-            JSONArray block = blocks.optJSONArray(j);
-            String command = block.optString(0);
-            Integer commandTypeInt = commandsByType.get(command);
-            if (commandTypeInt == null) {
-                commandTypeInt = 0;
-            }
-            blocksByCategory[commandTypeInt]++;
-            handleNesting(block, command, blocksByCategory);
-        }
-    }
-    /**
-     * If there are nested JSONArrays of block tuples in blockTuple param, then
-     * they will be counted in getBlocksByCategory.
-     * @param parentBlock see above
-     * @param command the command type of blockTuple
-     * @param blocksByCategory The array in which to incremenet block
-     * counts by type
-     */
-    private static void handleNesting(
-            JSONArray parentBlock,
-            String command,
-            int[] blocksByCategory) {
-        int[] nestedBlockTupleArrayIndexes = ScriptSpecs.getNestedBlockTupleArrayIndexes(command);
-        for (int index : nestedBlockTupleArrayIndexes) {
-            JSONArray childBlocks = parentBlock.optJSONArray(index);
-            if (childBlocks != null) {
-                sumBlocksByCategory(childBlocks, blocksByCategory);
-            }
-        }
+    public int getNestingDepth() {
+        return getAnalysis().getNestingDepth();
     }
     /**
      * Get the total blocks by category for an array of scripts.
@@ -116,13 +105,23 @@ public class Script {
      * @return The array of Script objects.
      */
     public static Script[] getScriptArray(JSONArray jsonArrayOfScriptTuples) {
+        return getScriptArray(jsonArrayOfScriptTuples, false);
+    }
+    /**
+     * Like {@code getScriptArray(JSONArray)}, optionally counting every block.
+     * @param jsonArrayOfScriptTuples The JSONArray of script tuples.
+     * @param allBlocks Whether the scripts count every block.
+     * @return The array of Script objects.
+     */
+    public static Script[] getScriptArray(JSONArray jsonArrayOfScriptTuples,
+                                          boolean allBlocks) {
         Script[] scripts;
         if (jsonArrayOfScriptTuples == null) {
             scripts = new Script[0];
         } else {
             scripts = new Script[jsonArrayOfScriptTuples.length()];
             for (int i = 0; i < scripts.length; i++) {
-                scripts[i] = new Script(jsonArrayOfScriptTuples.optJSONArray(i));
+                scripts[i] = new Script(jsonArrayOfScriptTuples.optJSONArray(i), allBlocks);
             }
         }
         return scripts;
@@ -0,0 +1,160 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The results of analysing one script: block counts by category, length,
+ * nesting depth and fingerprint.  Immutable.  A Script computes its analysis the first
+ * time it is asked for and then keeps it, so every report section reads the
+ * same numbers without walking the blocks again.
+ * @version 1.0
+ * @author agent
+ */
+public final class ScriptAnalysis {
+    private final int[] blocksByCategory;
+    private final int length;
+    private final int nestingDepth;
+    private final ScriptFingerprint fingerprint;
+
+    /**
+     * Constructor.  The array is used as it is, not copied.
+     * @param blocksByCategory Block counts indexed like {@code ScriptSpecs.getCategories}.
+     * @param length The number of blocks.
+     * @param nestingDepth The deepest nesting of C-blocks.
+     * @param fingerprint The structural fingerprint of the script.
+     */
+    ScriptAnalysis(int[] blocksByCategory, int length, int nestingDepth,
+                   ScriptFingerprint fingerprint) {
+        this.blocksByCategory = blocksByCategory;
+        this.length = length;
+        this.nestingDepth = nestingDepth;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Analyse a block tree.
+     * @param blockTree The blocks of a script.
+     * @return The analysis.
+     */
+    public static ScriptAnalysis analyze(BlockTree blockTree) {
+        int[] blocksByCategory = new int[ScriptSpecs.getCategories().length];
+        blockTree.sumBlocksByCategory(blocksByCategory);
+        int size = blockTree.size();
+        int maxDepth = 0;
+        int[] openEnds = new int[size];
+        int open = 0;
+        for (int i = 0; i < size; i++) {
+            while (open > 0 && openEnds[open - 1] <= i) {
+                open--;
+            }
+            if (open > maxDepth) {
+                maxDepth = open;
+            }
+            if (blockTree.getSubtreeEnd(i) > i + 1) {
+                openEnds[open++] = blockTree.getSubtreeEnd(i);
+            }
+        }
+        return new ScriptAnalysis(blocksByCategory, size, maxDepth,
+            ScriptFingerprint.of(blockTree));
+    }
+
+    /**
+     * The number of blocks in the script.
+     * @return the length.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * How deeply blocks are nested inside C-blocks like {@code doIf}.  0 for a
+     * script with no blocks inside other blocks.  For a script that counts
+     * every block, reporters nested inside other blocks count as nesting too.
+     * @return the deepest nesting.
+     */
+    public int getNestingDepth() {
+        return nestingDepth;
+    }
+
+    /**
+     * The structural fingerprint of the script, for finding copies of it.
+     * @return the fingerprint.
+     */
+    public ScriptFingerprint getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * The number of blocks of one category.
+     * @param category An index into {@code ScriptSpecs.getCategories}.
+     * @return the count.
+     */
+    public int getCategoryCount(int category) {
+        return blocksByCategory[category];
+    }
+
+    /**
+     * A copy of the block counts by category.
+     * @return An array indexed like {@code ScriptSpecs.getCategories}.
+     */
+    public int[] getBlocksByCategory() {
+        return blocksByCategory.clone();
+    }
+
+    /**
+     * Add this script's block counts into running totals.
+     * @param totals An array indexed like {@code ScriptSpecs.getCategories}.
+     */
+    public void addBlocksByCategory(int[] totals) {
+        for (int i = 0; i < blocksByCategory.length; i++) {
+            totals[i] += blocksByCategory[i];
+        }
+    }
+
+    /**
+     * Write this analysis in the binary form {@code readFrom} reads.  Only
+     * categories with blocks in them are written.
+     * @param out Where to write.
+     * @throws IOException if writing fails.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(length);
+        out.writeInt(nestingDepth);
+        int used = 0;
+        for (int count : blocksByCategory) {
+            if (count != 0) {
+                used++;
+            }
+        }
+        out.writeByte(used);
+        for (int i = 0; i < blocksByCategory.length; i++) {
+            if (blocksByCategory[i] != 0) {
+                out.writeByte(i);
+                out.writeInt(blocksByCategory[i]);
+            }
+        }
+        fingerprint.writeTo(out);
+    }
+
+    /**
+     * Read an analysis written by {@code writeTo}.
+     * @param in Where to read from.
+     * @return The analysis.
+     * @throws IOException if reading fails.
+     */
+    public static ScriptAnalysis readFrom(DataInput in) throws IOException {
+        int length = in.readInt();
+        int nestingDepth = in.readInt();
+        int[] blocksByCategory = new int[ScriptSpecs.getCategories().length];
+        int used = in.readUnsignedByte();
+        for (int i = 0; i < used; i++) {
+            int category = in.readUnsignedByte();
+            if (category >= blocksByCategory.length) {
+                throw new IOException("Unknown block category " + category);
+            }
+            blocksByCategory[category] = in.readInt();
+        }
+        return new ScriptAnalysis(blocksByCategory, length, nestingDepth,
+            ScriptFingerprint.readFrom(in));
+    }
+}
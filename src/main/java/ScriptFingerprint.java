@@ -0,0 +1,152 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Structural fingerprints of a script, for finding copied scripts.  The
+ * exact hash covers every opcode and how the blocks nest, so scripts with
+ * the same blocks in the same shape have the same exact hash.  The MinHash
+ * signature is computed over the set of runs of {@code SHINGLE_LENGTH}
+ * opcodes in pre-order; the fraction of its values two scripts share
+ * estimates how alike those sets are (their Jaccard similarity), so
+ * scripts that differ by a few blocks still have nearly the same signature.
+ * Immutable.
+ * @version 1.0
+ * @author agent
+ */
+public final class ScriptFingerprint {
+    /**
+     * The number of values in a MinHash signature.
+     */
+    public static final int SIGNATURE_LENGTH = 32;
+    /**
+     * The number of opcodes in a row that make up one shingle.
+     */
+    public static final int SHINGLE_LENGTH = 3;
+    private static final long[] SEEDS = new long[SIGNATURE_LENGTH];
+    private final long exactHash;
+    private final int[] signature;
+
+    static {
+        for (int i = 0; i < SIGNATURE_LENGTH; i++) {
+            SEEDS[i] = mix(i + 1);
+        }
+    }
+
+    /**
+     * Constructor.  The array is used as it is, not copied.
+     * @param exactHash The hash of the whole script.
+     * @param signature The MinHash signature.
+     */
+    private ScriptFingerprint(long exactHash, int[] signature) {
+        this.exactHash = exactHash;
+        this.signature = signature;
+    }
+
+    /**
+     * Fingerprint a block tree.
+     * @param blockTree The blocks of a script.
+     * @return The fingerprint.
+     */
+    public static ScriptFingerprint of(BlockTree blockTree) {
+        int size = blockTree.size();
+        long exactHash = mix(size);
+        for (int i = 0; i < size; i++) {
+            long block = (long) blockTree.getOpcodeId(i) << 32 | (blockTree.getSubtreeEnd(i) - i);
+            exactHash = mix(exactHash ^ block);
+        }
+
+        int[] signature = new int[SIGNATURE_LENGTH];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        int shingles = Math.max(1, size - SHINGLE_LENGTH + 1);
+        for (int i = 0; i < shingles; i++) {
+            long shingle = 0;
+            for (int j = i; j < Math.min(size, i + SHINGLE_LENGTH); j++) {
+                shingle = mix(shingle ^ blockTree.getOpcodeId(j));
+            }
+            for (int k = 0; k < SIGNATURE_LENGTH; k++) {
+                int value = (int) (mix(shingle ^ SEEDS[k]) >>> 33);
+                if (value < signature[k]) {
+                    signature[k] = value;
+                }
+            }
+        }
+        return new ScriptFingerprint(exactHash, signature);
+    }
+
+    /**
+     * The hash of the whole script.  Scripts with the same blocks nested the
+     * same way have the same exact hash.
+     * @return The hash.
+     */
+    public long getExactHash() {
+        return exactHash;
+    }
+
+    /**
+     * One value of the MinHash signature.
+     * @param index The index of the value, less than {@code SIGNATURE_LENGTH}.
+     * @return The value.
+     */
+    public int getSignature(int index) {
+        return signature[index];
+    }
+
+    /**
+     * Estimate how alike two scripts are: the fraction of their MinHash
+     * values that are the same.
+     * @param other The fingerprint of the other script.
+     * @return A number from 0, nothing alike, to 1, the same shingles.
+     */
+    public double similarity(ScriptFingerprint other) {
+        int same = 0;
+        for (int i = 0; i < SIGNATURE_LENGTH; i++) {
+            if (signature[i] == other.signature[i]) {
+                same++;
+            }
+        }
+        return (double) same / SIGNATURE_LENGTH;
+    }
+
+    /**
+     * Write this fingerprint in the binary form {@code readFrom} reads.
+     * @param out Where to write.
+     * @throws IOException if writing fails.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeLong(exactHash);
+        for (int value : signature) {
+            out.writeInt(value);
+        }
+    }
+
+    /**
+     * Read a fingerprint written by {@code writeTo}.
+     * @param in Where to read from.
+     * @return The fingerprint.
+     * @throws IOException if reading fails.
+     */
+    public static ScriptFingerprint readFrom(DataInput in) throws IOException {
+        long exactHash = in.readLong();
+        int[] signature = new int[SIGNATURE_LENGTH];
+        for (int i = 0; i < SIGNATURE_LENGTH; i++) {
+            signature[i] = in.readInt();
+        }
+        return new ScriptFingerprint(exactHash, signature);
+    }
+
+    /**
+     * Scramble the bits of a number, so that numbers that differ a little
+     * hash to numbers that differ a lot.  This is the finalizer of the
+     * SplitMix64 generator.
+     * @param value The number.
+     * @return The scrambled number.
+     */
+    static long mix(long value) {
+        long z = value + 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
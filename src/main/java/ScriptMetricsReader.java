@@ -0,0 +1,248 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads a metrics file written by {@code ScriptMetricsWriter}.  Each row
+ * group is memory mapped, and each column is read as an {@code IntBuffer}
+ * over the mapping, so adding up a column touches only that column's pages
+ * and never builds a row.
+ * @version 1.0
+ * @author agent
+ */
+public class ScriptMetricsReader implements Closeable {
+    private static final int MAX_HEADER_BYTES = 64 * 1024;
+    private final FileChannel channel;
+    private final List<String> columnNames = new ArrayList<>();
+    private final List<Byte> columnTypes = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+    private final List<IntBuffer[]> rowGroups = new ArrayList<>();
+    private final List<Integer> rowGroupStarts = new ArrayList<>();
+    private int rowCount = 0;
+
+    /**
+     * Open a metrics file.
+     * @param file The file.
+     * @throws IOException if the file cannot be read or is not a metrics file.
+     */
+    public ScriptMetricsReader(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            readFile();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * The number of rows, one per script.
+     * @return The number of rows.
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * The names of the columns, in file order.
+     * @return The column names.
+     */
+    public List<String> getColumnNames() {
+        return Collections.unmodifiableList(columnNames);
+    }
+
+    /**
+     * Find a column by name.
+     * @param name The name of the column.
+     * @return The index of the column.
+     * @throws IllegalArgumentException if there is no such column.
+     */
+    public int getColumn(String name) {
+        int column = columnNames.indexOf(name);
+        if (column < 0) {
+            throw new IllegalArgumentException("No column " + name);
+        }
+        return column;
+    }
+
+    /**
+     * Add up a column.
+     * @param name The name of the column.
+     * @return The sum of its values.
+     */
+    public long sum(String name) {
+        int column = getColumn(name);
+        long sum = 0;
+        for (IntBuffer[] group : rowGroups) {
+            IntBuffer values = group[column];
+            for (int i = 0, n = values.limit(); i < n; i++) {
+                sum += values.get(i);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Find the largest value in a column.
+     * @param name The name of the column.
+     * @return The largest value, or {@code Integer.MIN_VALUE} if there are no rows.
+     */
+    public int max(String name) {
+        int column = getColumn(name);
+        int max = Integer.MIN_VALUE;
+        for (IntBuffer[] group : rowGroups) {
+            IntBuffer values = group[column];
+            for (int i = 0, n = values.limit(); i < n; i++) {
+                max = Math.max(max, values.get(i));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Add up the column of each category.
+     * @return Block counts indexed like {@code ScriptSpecs.getCategories}.
+     */
+    public long[] sumBlocksByCategory() {
+        String[] cats = ScriptSpecs.getCategories();
+        long[] sums = new long[cats.length];
+        for (int i = 0; i < cats.length; i++) {
+            sums[i] = sum(ScriptMetricsWriter.BLOCKS_PREFIX + cats[i]);
+        }
+        return sums;
+    }
+
+    /**
+     * Get one value.
+     * @param name The name of the column.
+     * @param row The row, from 0.
+     * @return The value; for a name column, an index into the names or -1.
+     */
+    public int getInt(String name, int row) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("Row " + row);
+        }
+        int group = Collections.binarySearch(rowGroupStarts, row);
+        if (group < 0) {
+            group = -group - 2;
+        }
+        return rowGroups.get(group)[getColumn(name)].get(row - rowGroupStarts.get(group));
+    }
+
+    /**
+     * Get the value of a name column.
+     * @param name The name of the column.
+     * @param row The row, from 0.
+     * @return The name, or null if the row has none.
+     */
+    public String getString(String name, int row) {
+        if (columnTypes.get(getColumn(name)) != ScriptMetricsWriter.NAME_COLUMN) {
+            throw new IllegalArgumentException("Not a name column: " + name);
+        }
+        int id = getInt(name, row);
+        return id < 0 ? null : names.get(id);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Read the header and footer, and map the row groups.
+     * @throws IOException if the file cannot be read or is not a metrics file.
+     */
+    private void readFile() throws IOException {
+        long size = channel.size();
+        if (size < 32) {
+            throw new IOException("Not a metrics file");
+        }
+        ByteBuffer trailer = read(size - 16, 16);
+        long footerOffset = trailer.getLong();
+        if (trailer.getLong() != ScriptMetricsWriter.MAGIC
+            || footerOffset < 16 || footerOffset > size - 16) {
+            throw new IOException("Not a metrics file");
+        }
+
+        ByteBuffer header = read(0, (int) Math.min(MAX_HEADER_BYTES, footerOffset));
+        if (header.getLong() != ScriptMetricsWriter.MAGIC
+            || header.getInt() != ScriptMetricsWriter.VERSION) {
+            throw new IOException("Unsupported metrics file");
+        }
+        int columnCount = header.getInt();
+        for (int i = 0; i < columnCount; i++) {
+            columnNames.add(getString(header));
+            columnTypes.add(header.get());
+        }
+
+        ByteBuffer footer = read(footerOffset, (int) (size - 16 - footerOffset));
+        int nameCount = footer.getInt();
+        for (int i = 0; i < nameCount; i++) {
+            names.add(getString(footer));
+        }
+        int groupCount = footer.getInt();
+        for (int i = 0; i < groupCount; i++) {
+            mapRowGroup(footer.getLong(), columnCount);
+        }
+    }
+
+    /**
+     * Map a row group and make a buffer for each of its columns.
+     * @param offset Where the row group starts.
+     * @param columnCount The number of columns.
+     * @throws IOException if the row group cannot be mapped.
+     */
+    private void mapRowGroup(long offset, int columnCount) throws IOException {
+        int rows = read(offset, 4).getInt();
+        int columnBytes = ScriptMetricsWriter.align(4 * rows);
+        ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+            8 + (long) columnCount * columnBytes).order(ByteOrder.LITTLE_ENDIAN);
+        IntBuffer[] columns = new IntBuffer[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            mapped.limit(8 + (i + 1) * columnBytes).position(8 + i * columnBytes);
+            columns[i] = mapped.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            columns[i].limit(rows);
+        }
+        rowGroupStarts.add(rowCount);
+        rowGroups.add(columns);
+        rowCount += rows;
+    }
+
+    /**
+     * Read part of the file into a buffer.
+     * @param offset Where to start.
+     * @param length How many bytes to read.
+     * @return A little endian buffer of the bytes.
+     * @throws IOException if the bytes cannot be read.
+     */
+    private ByteBuffer read(long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Truncated metrics file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Read a length prefixed UTF-8 string.
+     * @param buffer The buffer to read from.
+     * @return The string.
+     */
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
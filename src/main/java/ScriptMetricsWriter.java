@@ -0,0 +1,269 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exports one row of metrics per script, stage scripts included, in a
+ * compact columnar binary file that {@code ScriptMetricsReader} can memory
+ * map and add up a column at a time.  The columns are the project number,
+ * project name, sprite number (0 for the stage), sprite name, script number,
+ * length, and the block count of each category, all 32 bit ints.  Names are
+ * stored once each in a dictionary at the end of the file, and the name
+ * columns hold indexes into it, or -1 for no name.  Rows are written in
+ * groups as they come, so only one group is held in memory.
+ * <p>
+ * The file, all little endian:
+ * <pre>
+ * header:    long MAGIC, int VERSION, int column count, then for each column
+ *            int name length, the UTF-8 name, byte type (0 int, 1 name);
+ *            padded to a multiple of 8 bytes
+ * row group: int row count, int 0, then for each column row count ints,
+ *            padded to a multiple of 8 bytes
+ * footer:    int name count, then for each name int length and UTF-8 bytes;
+ *            int row group count, then for each row group long offset
+ * trailer:   long footer offset, long MAGIC
+ * </pre>
+ * The Reporter flags do not apply: every metric of every script is written.
+ * @version 1.0
+ * @author agent
+ */
+public class ScriptMetricsWriter implements ReportSink {
+    static final long MAGIC = 0x5343415454434f4cL;
+    static final int VERSION = 1;
+    static final byte INT_COLUMN = 0;
+    static final byte NAME_COLUMN = 1;
+    static final String PROJECT = "project";
+    static final String PROJECT_NAME = "project_name";
+    static final String SPRITE = "sprite";
+    static final String SPRITE_NAME = "sprite_name";
+    static final String SCRIPT = "script";
+    static final String LENGTH = "length";
+    static final String BLOCKS_PREFIX = "blocks.";
+    private static final int DEFAULT_ROW_GROUP_SIZE = 64 * 1024;
+    private static final int FIXED_COLUMNS = 6;
+
+    private final FileChannel channel;
+    private final int rowGroupSize;
+    private final int[][] columns;
+    private final Map<String, Integer> nameIds = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private final List<Long> rowGroupOffsets = new ArrayList<>();
+    private final int[] blocksByCat = new int[ScriptSpecs.getCategories().length];
+    private int rows = 0;
+
+    /**
+     * Start a metrics file.
+     * @param file The file to write.
+     * @throws IOException if the file cannot be opened.
+     */
+    public ScriptMetricsWriter(File file) throws IOException {
+        this(file, DEFAULT_ROW_GROUP_SIZE);
+    }
+
+    /**
+     * Start a metrics file.
+     * @param file The file to write.
+     * @param rowGroupSize The most rows to hold before writing them.
+     * @throws IOException if the file cannot be opened.
+     */
+    ScriptMetricsWriter(File file, int rowGroupSize) throws IOException {
+        this.rowGroupSize = rowGroupSize;
+        this.columns = new int[getColumnNames().size()][rowGroupSize];
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * The names of the columns, in file order.
+     * @return The column names.
+     */
+    static List<String> getColumnNames() {
+        List<String> columnNames = new ArrayList<>(Arrays.asList(
+            PROJECT, PROJECT_NAME, SPRITE, SPRITE_NAME, SCRIPT, LENGTH));
+        for (String category : ScriptSpecs.getCategories()) {
+            columnNames.add(BLOCKS_PREFIX + category);
+        }
+        return Collections.unmodifiableList(columnNames);
+    }
+
+    @Override
+    public void begin(int projectCount) {
+        List<String> columnNames = getColumnNames();
+        ByteBuffer header = newBuffer(16 + columnNames.size() * 64);
+        header.putLong(MAGIC).putInt(VERSION).putInt(columnNames.size());
+        for (String name : columnNames) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            header.putInt(bytes.length).put(bytes);
+            header.put(PROJECT_NAME.equals(name) || SPRITE_NAME.equals(name)
+                ? NAME_COLUMN : INT_COLUMN);
+        }
+        pad(header);
+        write(header);
+    }
+
+    @Override
+    public void project(int projectNo, ProjectSummary project) {
+        if (project.getErrorMessage() != null) {
+            return;
+        }
+        int projectName = getNameId(project.getName());
+        for (int i = 0; i < project.getStageScriptCount(); i++) {
+            addRow(projectNo, projectName, 0, -1, i + 1, project.getStageScript(i));
+        }
+        for (int sprite = 0; sprite < project.getSpriteCount(); sprite++) {
+            int spriteName = getNameId(project.getSpriteName(sprite));
+            for (int i = 0; i < project.getScriptCount(sprite); i++) {
+                addRow(projectNo, projectName, sprite + 1, spriteName, i + 1,
+                    project.getScript(sprite, i));
+            }
+        }
+    }
+
+    @Override
+    public void end() {
+        writeRowGroup();
+        try {
+            long footerOffset = channel.position();
+            int footerSize = 8 + 8 * rowGroupOffsets.size();
+            List<byte[]> encoded = new ArrayList<>(names.size());
+            for (String name : names) {
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                encoded.add(bytes);
+                footerSize += 4 + bytes.length;
+            }
+            ByteBuffer footer = newBuffer(footerSize + 16);
+            footer.putInt(encoded.size());
+            for (byte[] bytes : encoded) {
+                footer.putInt(bytes.length).put(bytes);
+            }
+            footer.putInt(rowGroupOffsets.size());
+            for (long offset : rowGroupOffsets) {
+                footer.putLong(offset);
+            }
+            footer.putLong(footerOffset).putLong(MAGIC);
+            write(footer);
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Add one script's row, writing the row group if it is full.
+     * @param projectNo The number of the project.
+     * @param projectName The dictionary index of the project name.
+     * @param spriteNo The number of the sprite, or 0 for the stage.
+     * @param spriteName The dictionary index of the sprite name, or -1.
+     * @param scriptNo The number of the script.
+     * @param analysis The script's analysis.
+     */
+    private void addRow(int projectNo, int projectName, int spriteNo, int spriteName,
+                        int scriptNo, ScriptAnalysis analysis) {
+        columns[0][rows] = projectNo;
+        columns[1][rows] = projectName;
+        columns[2][rows] = spriteNo;
+        columns[3][rows] = spriteName;
+        columns[4][rows] = scriptNo;
+        columns[5][rows] = analysis.getLength();
+        Arrays.fill(blocksByCat, 0);
+        analysis.addBlocksByCategory(blocksByCat);
+        for (int i = 0; i < blocksByCat.length; i++) {
+            columns[FIXED_COLUMNS + i][rows] = blocksByCat[i];
+        }
+        if (++rows == rowGroupSize) {
+            writeRowGroup();
+        }
+    }
+
+    /**
+     * Write the rows held, if any, as a row group.
+     */
+    private void writeRowGroup() {
+        if (rows == 0) {
+            return;
+        }
+        int columnBytes = align(4 * rows);
+        ByteBuffer group = newBuffer(8 + columns.length * columnBytes);
+        group.putInt(rows).putInt(0);
+        for (int[] column : columns) {
+            group.asIntBuffer().put(column, 0, rows);
+            group.position(group.position() + columnBytes);
+        }
+        try {
+            rowGroupOffsets.add(channel.position());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        write(group);
+        rows = 0;
+    }
+
+    /**
+     * The dictionary index of a name, adding it if it is new.
+     * @param name The name.
+     * @return The index.
+     */
+    private int getNameId(String name) {
+        Integer id = nameIds.get(name);
+        if (id == null) {
+            id = names.size();
+            names.add(name);
+            nameIds.put(name, id);
+        }
+        return id;
+    }
+
+    /**
+     * Write a filled buffer to the file.
+     * @param buffer The buffer, positioned at the end of its contents.
+     */
+    private void write(ByteBuffer buffer) {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A little endian buffer.
+     * @param capacity Its size.
+     * @return The buffer.
+     */
+    private static ByteBuffer newBuffer(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Pad a buffer with zeros to a multiple of 8 bytes.
+     * @param buffer The buffer.
+     */
+    private static void pad(ByteBuffer buffer) {
+        while (buffer.position() % 8 != 0) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    /**
+     * Round a size up to a multiple of 8.
+     * @param size The size.
+     * @return The rounded size.
+     */
+    static int align(int size) {
+        return (size + 7) & ~7;
+    }
+}
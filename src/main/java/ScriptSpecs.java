@@ -1,5 +1,7 @@
+import java.util.Collections;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 
 /**
  * @author Clint Hall
@@ -172,6 +174,156 @@ public class ScriptSpecs {
     	{"showList:", "12"},
     	{"hideList:", "12"}
     };
+    /**
+     * The arguments each block takes, in the order they follow the opcode in
+     * its block tuple: {@code STACK_ARGUMENT} for a stack of blocks,
+     * {@code REPORTER_ARGUMENT} for an input that holds a literal or a
+     * reporter block, and {@code FIXED_ARGUMENT} for a name or menu choice
+     * that never holds a block.  A trailing {@code REPEAT_ARGUMENT} repeats
+     * the kind before it for any further arguments.
+     */
+    private static final String[][] ARGUMENTS = {
+        {"forward:", "r"},
+        {"turnRight:", "r"},
+        {"turnLeft:", "r"},
+        {"heading:", "r"},
+        {"pointTowards:", "r"},
+        {"gotoX:y:", "rr"},
+        {"gotoSpriteOrMouse:", "r"},
+        {"glideSecs:toX:y:elapsed:from:", "rrr"},
+        {"changeXposBy:", "r"},
+        {"xpos:", "r"},
+        {"changeYposBy:", "r"},
+        {"ypos:", "r"},
+        {"bounceOffEdge", ""},
+        {"setRotationStyle", "r"},
+        {"xpos", ""},
+        {"ypos", ""},
+        {"heading", ""},
+        {"say:duration:elapsed:from:", "rr"},
+        {"say:", "r"},
+        {"think:duration:elapsed:from:", "rr"},
+        {"think:", "r"},
+        {"show", ""},
+        {"hide", ""},
+        {"lookLike:", "r"},
+        {"nextCostume", ""},
+        {"startScene", "r"},
+        {"startSceneAndWait", "r"},
+        {"nextScene", ""},
+        {"changeGraphicEffect:by:", "rr"},
+        {"setGraphicEffect:to:", "rr"},
+        {"filterReset", ""},
+        {"changeSizeBy:", "r"},
+        {"setSizeTo:", "r"},
+        {"comeToFront", ""},
+        {"goBackByLayers:", "r"},
+        {"costumeIndex", ""},
+        {"sceneName", ""},
+        {"backgroundIndex", ""},
+        {"scale", ""},
+        {"playSound:", "r"},
+        {"doPlaySoundAndWait", "r"},
+        {"stopAllSounds", ""},
+        {"playDrum", "rr"},
+        {"rest:elapsed:from:", "r"},
+        {"noteOn:duration:elapsed:from:", "rr"},
+        {"instrument:", "r"},
+        {"changeVolumeBy:", "r"},
+        {"setVolumeTo:", "r"},
+        {"volume", ""},
+        {"changeTempoBy:", "r"},
+        {"setTempoTo:", "r"},
+        {"tempo", ""},
+        {"clearPenTrails", ""},
+        {"stampCostume", ""},
+        {"putPenDown", ""},
+        {"putPenUp", ""},
+        {"penColor:", "r"},
+        {"changePenHueBy:", "r"},
+        {"setPenHueTo:", "r"},
+        {"changePenShadeBy:", "r"},
+        {"setPenShadeTo:", "r"},
+        {"changePenSizeBy:", "r"},
+        {"penSize:", "r"},
+        {"whenGreenFlag", ""},
+        {"whenKeyPressed", "-"},
+        {"whenClicked", ""},
+        {"whenSceneStarts", "-"},
+        {"whenSensorGreaterThan", "-r"},
+        {"whenIReceive", "-"},
+        {"broadcast:", "r"},
+        {"doBroadcastAndWait", "r"},
+        {"wait:elapsed:from:", "r"},
+        {"doRepeat", "rs"},
+        {"doForever", "s"},
+        {"doIf", "rs"},
+        {"doIfElse", "rss"},
+        {"doWaitUntil", "r"},
+        {"doUntil", "rs"},
+        {"doForeverIf", "rs"},
+        {"doWhile", "rs"},
+        {"doForLoop", "-rs"},
+        {"stopScripts", "-"},
+        {"whenCloned", ""},
+        {"createCloneOf", "r"},
+        {"deleteClone", ""},
+        {"touching:", "r"},
+        {"touchingColor:", "r"},
+        {"color:sees:", "rr"},
+        {"distanceTo:", "r"},
+        {"doAsk", "r"},
+        {"answer", ""},
+        {"keyPressed:", "r"},
+        {"mousePressed", ""},
+        {"mouseX", ""},
+        {"mouseY", ""},
+        {"soundLevel", ""},
+        {"senseVideoMotion", "rr"},
+        {"setVideoState", "r"},
+        {"setVideoTransparency", "r"},
+        {"timer", ""},
+        {"timerReset", ""},
+        {"getAttribute:of:", "rr"},
+        {"timeAndDate", "r"},
+        {"timestamp", ""},
+        {"getUserName", ""},
+        {"+", "rr"},
+        {"-", "rr"},
+        {"*", "rr"},
+        {"/", "rr"},
+        {"randomFrom:to:", "rr"},
+        {"<", "rr"},
+        {"=", "rr"},
+        {">", "rr"},
+        {"&", "rr"},
+        {"|", "rr"},
+        {"not", "r"},
+        {"concatenate:with:", "rr"},
+        {"letter:of:", "rr"},
+        {"stringLength:", "r"},
+        {"%", "rr"},
+        {"rounded", "r"},
+        {"computeFunction:of:", "rr"},
+        {"readVariable", "-"},
+        {"setVar:to:", "-r"},
+        {"changeVar:by:", "-r"},
+        {"showVariable:", "-"},
+        {"hideVariable:", "-"},
+        {"contentsOfList:", "-"},
+        {"append:toList:", "r-"},
+        {"deleteLine:ofList:", "r-"},
+        {"insert:at:ofList:", "rr-"},
+        {"setLine:ofList:to:", "r-r"},
+        {"getLine:ofList:", "r-"},
+        {"lineCountOfList:", "-"},
+        {"list:contains:", "-r"},
+        {"showList:", "-"},
+        {"hideList:", "-"},
+        {"procDef", "----"},
+        {"call", "-r*"},
+        {"getParam", "--"}
+    };
     private static final String[] CATEGORIES = {
         "undefined",
         "Motion",
@@ -188,21 +340,170 @@ public class ScriptSpecs {
         "List",
         "Extension"
     };
-    private static Map<String, Integer> commandsByType = null;
+    /**
+     * Opcode id given to opcodes that are not in {@code COMMANDS}.
+     */
+    public static final int UNKNOWN_OPCODE_ID = 0;
+    /**
+     * Argument kind of a stack of blocks, like the inside of {@code doIf}.
+     */
+    public static final char STACK_ARGUMENT = 's';
+    /**
+     * Argument kind of an input that holds a literal or a reporter block.
+     */
+    public static final char REPORTER_ARGUMENT = 'r';
+    /**
+     * Argument kind of a name or menu choice that never holds a block.
+     */
+    public static final char FIXED_ARGUMENT = '-';
+    /**
+     * Argument kind that repeats the kind before it for the rest of the
+     * arguments, as for the inputs of a custom block's {@code call}.
+     */
+    public static final char REPEAT_ARGUMENT = '*';
+    /**
+     * Argument kind of an argument of a block missing from the table, whose
+     * kind is guessed from the argument's shape.
+     */
+    public static final char UNKNOWN_ARGUMENT = '?';
+    private static final int PERFECT_HASH_SEED = 0x9E3779B1;
+    private static final int PERFECT_HASH_ATTEMPTS = 4096;
+    private static final String[] OPCODES;
+    private static final int[] OPCODE_CATEGORIES;
+    private static final int[][] NESTED_INDEXES;
+    private static final String[] NESTED_KINDS;
+    private static final Map<String, Integer> COMMANDS_BY_TYPE;
+    private static final Map<String, String> ARGUMENTS_BY_OPCODE;
+    private static final int[] OPCODE_SLOTS;
+    private static final int OPCODE_HASH_MULTIPLIER;
+    private static final int OPCODE_HASH_SHIFT;
+    static {
+        Map<String, Integer> categories = new LinkedHashMap<>();
+        for (String[] command : COMMANDS) {
+            categories.putIfAbsent(command[0], Integer.valueOf(command[1]));
+        }
+        COMMANDS_BY_TYPE = Collections.unmodifiableMap(new HashMap<>(categories));
+        OPCODES = new String[categories.size() + 1];
+        OPCODE_CATEGORIES = new int[OPCODES.length];
+        NESTED_INDEXES = new int[OPCODES.length][];
+        NESTED_INDEXES[UNKNOWN_OPCODE_ID] = new int[0];
+        NESTED_KINDS = new String[OPCODES.length];
+        NESTED_KINDS[UNKNOWN_OPCODE_ID] = "";
+        int id = UNKNOWN_OPCODE_ID + 1;
+        for (Map.Entry<String, Integer> entry : categories.entrySet()) {
+            OPCODES[id] = entry.getKey();
+            OPCODE_CATEGORIES[id] = entry.getValue();
+            NESTED_INDEXES[id] = getNestedBlockTupleArrayIndexes(entry.getKey());
+            NESTED_KINDS[id] = toArgumentKinds(NESTED_INDEXES[id]);
+            id++;
+        }
+        Map<String, String> arguments = new HashMap<>();
+        for (String[] argument : ARGUMENTS) {
+            arguments.put(argument[0], argument[1]);
+        }
+        ARGUMENTS_BY_OPCODE = Collections.unmodifiableMap(arguments);
+        // Find a multiplier that sends every opcode's hashCode to its own slot,
+        // so a lookup is one multiply, one shift and one equals.
+        int bits = 32 - Integer.numberOfLeadingZeros(OPCODES.length * 2 - 1);
+        int[] slots = null;
+        int multiplier = PERFECT_HASH_SEED;
+        while (slots == null) {
+            for (int attempt = 0; attempt < PERFECT_HASH_ATTEMPTS && slots == null; attempt++) {
+                multiplier = PERFECT_HASH_SEED + 2 * attempt;
+                slots = fillOpcodeSlots(multiplier, 32 - bits);
+            }
+            if (slots == null) {
+                bits++;
+            }
+        }
+        OPCODE_SLOTS = slots;
+        OPCODE_HASH_MULTIPLIER = multiplier;
+        OPCODE_HASH_SHIFT = 32 - bits;
+    }
+    /**
+     * The argument kinds that visit just the given nested stacks.
+     * @param nestedIndexes Indexes of nested stacks in a block tuple.
+     * @return One kind per argument up to the last nested stack.
+     */
+    private static String toArgumentKinds(int[] nestedIndexes) {
+        StringBuilder kinds = new StringBuilder();
+        for (int index : nestedIndexes) {
+            while (kinds.length() < index - 1) {
+                kinds.append(FIXED_ARGUMENT);
+            }
+            kinds.append(STACK_ARGUMENT);
+        }
+        return kinds.toString();
+    }
+    /**
+     * Try to place every opcode in a table of {@code 2^(32 - shift)} slots
+     * without two opcodes sharing a slot.
+     * @param multiplier An odd multiplier for the opcode hash codes.
+     * @param shift How far to shift the product right to get a slot.
+     * @return The table of opcode ids by slot, or null if two opcodes collide.
+     */
+    private static int[] fillOpcodeSlots(int multiplier, int shift) {
+        int[] slots = new int[1 << (32 - shift)];
+        for (int id = UNKNOWN_OPCODE_ID + 1; id < OPCODES.length; id++) {
+            int slot = (OPCODES[id].hashCode() * multiplier) >>> shift;
+            if (slots[slot] != UNKNOWN_OPCODE_ID) {
+                return null;
+            }
+            slots[slot] = id;
+        }
+        return slots;
+    }
     /**
      * Returns a map in which the keys are the command opcodes that can appear
      * in Scratch scripts and the values are the category to which the command belongs.
+     * The map is built when the class is loaded, cannot be modified and is safe
+     * to share between threads.
      * @return the above specified map.
      */
     public static Map<String, Integer> getCommandsByType() {
-        if (commandsByType == null) {
-            commandsByType = new HashMap<>();
-            for (int i = 0; i < COMMANDS.length; i++) {
-                String[] command = COMMANDS[i];
-                commandsByType.put(command[0], Integer.valueOf(command[1]));
-            }
+        return COMMANDS_BY_TYPE;
+    }
+    /**
+     * Every known opcode has a small, dense id, fixed when the class is loaded.
+     * Storing ids instead of opcode strings lets scripts be analysed with
+     * array lookups.  The lookup uses a perfect hash table built when the
+     * class is loaded: it does not allocate and is safe from any thread.
+     * @param opcode The opcode, for example {@code "doIf"}.
+     * @return The opcode's id, or {@code UNKNOWN_OPCODE_ID}.
+     */
+    public static int getOpcodeId(String opcode) {
+        if (opcode == null) {
+            return UNKNOWN_OPCODE_ID;
         }
-        return commandsByType;
+        int id = OPCODE_SLOTS[(opcode.hashCode() * OPCODE_HASH_MULTIPLIER) >>> OPCODE_HASH_SHIFT];
+        if (id != UNKNOWN_OPCODE_ID && OPCODES[id].equals(opcode)) {
+            return id;
+        }
+        return UNKNOWN_OPCODE_ID;
+    }
+    /**
+     * The opcode with a given id.
+     * @param opcodeId An id returned by {@code getOpcodeId}.
+     * @return The opcode, or null for {@code UNKNOWN_OPCODE_ID}.
+     */
+    public static String getOpcode(int opcodeId) {
+        return OPCODES[opcodeId];
+    }
+    /**
+     * The category of the opcode with a given id.
+     * @param opcodeId An id returned by {@code getOpcodeId}.
+     * @return An index into {@code getCategories()}.  0, "undefined", for
+     *     {@code UNKNOWN_OPCODE_ID}.
+     */
+    public static int getCategoryOfOpcodeId(int opcodeId) {
+        return OPCODE_CATEGORIES[opcodeId];
+    }
+    /**
+     * The number of opcode ids, including {@code UNKNOWN_OPCODE_ID}.
+     * @return one more than the largest opcode id.
+     */
+    public static int getOpcodeCount() {
+        return OPCODES.length;
     }
     /**
      * Returns an array of the category names.  The indexes in the array correspond to the
@@ -235,5 +536,55 @@ public class ScriptSpecs {
         }
         return new int[0];
     }
+    /**
+     * The kinds of the arguments a block takes, one character per argument
+     * after the opcode: {@code STACK_ARGUMENT}, {@code REPORTER_ARGUMENT} or
+     * {@code FIXED_ARGUMENT}, with an optional trailing
+     * {@code REPEAT_ARGUMENT}.  Unlike {@code getNestedBlockTupleArrayIndexes}
+     * this lists the stacks of every C-block, including ones like
+     * {@code doForeverIf}, and the inputs that may hold reporters.  Only
+     * the walk over every block uses it; it gives no block a category.
+     * @param command the command name.
+     * @return The argument kinds, or null if the block is not in the table.
+     */
+    public static String getArgumentKinds(String command) {
+        return ARGUMENTS_BY_OPCODE.get(command);
+    }
+    /**
+     * The kind of one argument of a block.
+     * @param kinds Argument kinds from {@code getArgumentKinds}, or null for
+     *     a block missing from the table.
+     * @param position The position of the argument after the opcode, from 0.
+     * @return The argument's kind.  {@code UNKNOWN_ARGUMENT} if {@code kinds}
+     *     is null, and {@code FIXED_ARGUMENT} past the last argument.
+     */
+    public static char getArgumentKind(String kinds, int position) {
+        if (kinds == null) {
+            return UNKNOWN_ARGUMENT;
+        }
+        int last = kinds.length() - 1;
+        if (last > 0 && kinds.charAt(last) == REPEAT_ARGUMENT) {
+            return kinds.charAt(Math.min(position, last - 1));
+        }
+        return position <= last ? kinds.charAt(position) : FIXED_ARGUMENT;
+    }
+    /**
+     * Like {@code getNestedBlockTupleArrayIndexes(String)}, but by opcode id and
+     * without allocating.  The returned array is shared and must not be modified.
+     * @param opcodeId An id returned by {@code getOpcodeId}.
+     * @return An int array of the indexes of nested JSONArrays of block
+     *         tuples
+     */
+    static int[] getNestedBlockTupleArrayIndexes(int opcodeId) {
+        return NESTED_INDEXES[opcodeId];
+    }
+    /**
+     * The argument kinds, as {@code getArgumentKinds} describes them, that
+     * visit just the stacks {@code getNestedBlockTupleArrayIndexes} lists.
+     * @param opcodeId An id returned by {@code getOpcodeId}.
+     * @return The argument kinds.
+     */
+    static String getNestedArgumentKinds(int opcodeId) {
+        return NESTED_KINDS[opcodeId];
+    }
 }
-
@@ -1,7 +1,12 @@
 import org.json.JSONObject;
 import org.json.JSONArray;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.io.IOException;
 import java.util.Arrays;
 
@@ -11,56 +16,117 @@ import java.util.Arrays;
  */
 public class Sprites {
     private final static int BLOCK_TUPLE_INDEX = 2;
-    private Map<String, JSONObject> spriteMap;
-    private Map<String, Script[]> scriptsMap = new HashMap<>();
+    private final Map<String, JSONObject> spriteMap;
+    private final ConcurrentMap<String, Script[]> scriptsMap = new ConcurrentHashMap<>();
+    private final Map<String, Integer> nextSuffixes = new HashMap<>();
+    private final List<String> sortedNames;
+    private final List<String> authoredNames;
+    private final boolean allBlocks;
     /**
      * The root of the sb2 json object is a Stage object.
      * This constructs a Sprites object from a Stage JSONObject.
+     * The sprite names are sorted once, here.
      * @param stage root of an Sb2 file
      */
     public Sprites(JSONObject stage) {
+        this(stage, false);
+    }
+    /**
+     * Constructs a Sprites object whose scripts optionally count every
+     * block, argument reporters included.
+     * @param stage root of an Sb2 file
+     * @param allBlocks Whether the scripts count every block.
+     */
+    public Sprites(JSONObject stage, boolean allBlocks) {
+        this.allBlocks = allBlocks;
         JSONArray stageChildren = stage.optJSONArray("children");
         spriteMap = new HashMap<String, JSONObject>();
-        if (stageChildren == null) {
-            return;
+        List<JSONObject> sprites = new ArrayList<>();
+        if (stageChildren != null) {
+            for (int i = 0; i < stageChildren.length(); i++) {
+                JSONObject child = stageChildren.optJSONObject(i);
+                if (isSprite(child)) {
+                    addSpriteToSpriteMap(child);
+                    sprites.add(child);
+                }
+            }
         }
-        for (int i = 0; i < stageChildren.length(); i++) {
-            JSONObject child = stageChildren.optJSONObject(i);
-            if (isSprite(child)) {
-                addSpriteToSpriteMap(child);
+        String[] names = spriteMap.keySet().toArray(new String[spriteMap.size()]);
+        Arrays.sort(names);
+        sortedNames = Collections.unmodifiableList(Arrays.asList(names));
+        //sprites were renamed as they were added, so read the final names
+        List<String> authored = new ArrayList<>(names.length);
+        for (JSONObject sprite : sprites) {
+            String name = sprite.optString("objName");
+            if (spriteMap.get(name) == sprite) {
+                authored.add(name);
             }
         }
+        authoredNames = Collections.unmodifiableList(authored);
     }
     /**
-     * Add sprite to spriteMap. Guarantee unique name.
+     * Add sprite to spriteMap. Guarantee unique name.  The first sprite with
+     * a name keeps it until a second one comes along; then the first becomes
+     * name_0 and the others name_1, name_2 and so on, skipping any name a
+     * sprite already has.  The next number to try for each name is kept, so
+     * many sprites with one name take linear, not quadratic, time.
      * @param sprite A Sprite JSONObject
      */
     private void addSpriteToSpriteMap(JSONObject sprite) {
         String spriteName = sprite.optString("objName");
         //make sure the Sprite has a name
-        if (spriteName == "") {
+        if (spriteName.isEmpty()) {
             spriteName = "NO_NAME";
             sprite.put("objName", spriteName);
         }
         //if there is already a sprite with this name, let's add '_0' to it's name.
         if (spriteMap.containsKey(spriteName)) {
-            JSONObject sameNameSprite = spriteMap.get(spriteName);
+            JSONObject sameNameSprite = spriteMap.remove(spriteName);
+            releaseSuffix(spriteName);
             sameNameSprite.put("objName", spriteName + "_0");
             spriteMap.put(spriteName + "_0", sameNameSprite);
-            spriteMap.remove(spriteName);
         }
         //let's add '_n' to this Sprites name, where n is the smallest unused positive int
         if (spriteMap.containsKey(spriteName + "_0")) {
-            int count = 1;
-            while (spriteMap.containsKey(spriteName + "_" + count)) {
+            int count = nextSuffixes.getOrDefault(spriteName, 1);
+            String uniqueName = spriteName + "_" + count;
+            while (spriteMap.containsKey(uniqueName)) {
                 count++;
+                uniqueName = spriteName + "_" + count;
             }
-            spriteName = spriteName + "_" + count;
+            nextSuffixes.put(spriteName, count + 1);
+            spriteName = uniqueName;
             sprite.put("objName", spriteName);
-        } 
+        }
         spriteMap.put(spriteName, sprite);
     }
-        
+    /**
+     * A name of the form base_n is free again, so base_n must be tried before
+     * any larger number the next time a sprite named base is added.
+     * @param spriteName The name that is no longer used.
+     */
+    private void releaseSuffix(String spriteName) {
+        int underscore = spriteName.lastIndexOf('_');
+        if (underscore < 0 || underscore == spriteName.length() - 1) {
+            return;
+        }
+        for (int i = underscore + 1; i < spriteName.length(); i++) {
+            if (!Character.isDigit(spriteName.charAt(i))) {
+                return;
+            }
+        }
+        String baseName = spriteName.substring(0, underscore);
+        Integer next = nextSuffixes.get(baseName);
+        try {
+            int suffix = Integer.parseInt(spriteName.substring(underscore + 1));
+            if (next != null && suffix < next && suffix > 0
+                && spriteName.equals(baseName + "_" + suffix)) {
+                nextSuffixes.put(baseName, suffix);
+            }
+        } catch (NumberFormatException e) {
+            return;
+        }
+    }
 
     /**
      * Check whether a stage child is a Sprite.  It could also be
@@ -75,13 +141,27 @@ public class Sprites {
     /**
      * Each sprite has a unique name.
      * This method returns these names in a array of strings.
-     * @return Array of sprite names.
+     * Each call copies the names into a new array; callers that only read
+     * them should use {@code getSortedSpriteNames}, which does not copy.
+     * @return Array of sprite names, sorted.  A new array each call.
      */
     public String[] getSpriteNames() {
-        String[] spriteNames = new String[spriteMap.size()];
-        spriteNames = spriteMap.keySet().toArray(spriteNames);
-        Arrays.sort(spriteNames);
-        return spriteNames;
+        return sortedNames.toArray(new String[sortedNames.size()]);
+    }
+    /**
+     * The sprite names in sorted order, without copying.
+     * @return An unmodifiable list of the sprite names, sorted.
+     */
+    public List<String> getSortedSpriteNames() {
+        return sortedNames;
+    }
+    /**
+     * The sprite names in the order the sprites were made, which is the
+     * order of the stage's children.
+     * @return An unmodifiable list of the sprite names.
+     */
+    public List<String> getSpriteNamesInAuthoringOrder() {
+        return authoredNames;
     }
 
     /**
@@ -91,7 +171,11 @@ public class Sprites {
      */
 
     /**
-     * Sprites may have scripts associated with them. 
+     * Sprites may have scripts associated with them.  The scripts are built
+     * the first time they are asked for and kept.  This is safe from any
+     * number of threads without a lock: threads that race on the same
+     * sprite may each build the scripts, but all of them get the array
+     * that was kept first.
      * @param spriteName The name of the sprite
      * @return an array of the Script objects for the sprite. 
      */
@@ -106,9 +190,9 @@ public class Sprites {
                 spriteName + " is not the name of a Sprite in this project");
         }
         JSONArray jsonArrayOfScriptTuples = sprite.optJSONArray("scripts");
-        scripts = Script.getScriptArray(jsonArrayOfScriptTuples);
-        scriptsMap.put(spriteName, scripts);
-        return scripts;
+        scripts = Script.getScriptArray(jsonArrayOfScriptTuples, allBlocks);
+        Script[] kept = scriptsMap.putIfAbsent(spriteName, scripts);
+        return kept != null ? kept : scripts;
     }
     /**
      * Return the number of Scripts associated with a particular Sprite.
@@ -0,0 +1,53 @@
+import java.io.PrintWriter;
+
+/**
+ * Writes the plain text report, exactly as {@code Reporter} does, with the
+ * summary and duplicate scripts at the end if the Reporter writes them.
+ * @version 1.0
+ * @author agent
+ */
+public class TextReportSink implements ReportSink {
+    private final Reporter reporter;
+    private final PrintWriter pw;
+    private final AggregateStats stats;
+    private final DuplicateDetector duplicates;
+
+    /**
+     * Constructor.
+     * @param reporter The Reporter that formats the report.
+     * @param pw Where to write it.
+     */
+    public TextReportSink(Reporter reporter, PrintWriter pw) {
+        this.reporter = reporter;
+        this.pw = pw;
+        this.stats = reporter.isReportSummary() ? new AggregateStats() : null;
+        this.duplicates = reporter.isReportDuplicates() ? new DuplicateDetector() : null;
+    }
+
+    @Override
+    public void begin(int projectCount) {
+        reporter.reportHeader(projectCount, pw);
+    }
+
+    @Override
+    public void project(int projectNo, ProjectSummary project) {
+        reporter.reportProject(projectNo, pw, project);
+        if (stats != null) {
+            stats.add(project);
+        }
+        if (duplicates != null) {
+            duplicates.add(projectNo, project);
+        }
+    }
+
+    @Override
+    public void end() {
+        if (stats != null) {
+            reporter.reportSummary(pw, stats);
+        }
+        if (duplicates != null) {
+            reporter.reportDuplicates(pw, duplicates);
+        }
+        pw.flush();
+    }
+}
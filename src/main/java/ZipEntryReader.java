@@ -0,0 +1,368 @@
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Reads one entry of a zip archive, such as the project.json of an .sb2
+ * file, without opening a {@code ZipFile}.  The end of central directory
+ * record, the central directory and the entry are read with positional
+ * reads into buffers that are kept for the next archive, and the file is
+ * closed before {@code read} returns.  Only that entry is inflated.  Each
+ * thread has its own reader, from {@code forThread}; the bytes of an entry
+ * are good until the thread reads the next one or calls {@code release}.
+ * <p>
+ * Only what Scratch writes is supported: entries that are stored or
+ * deflated, with no encryption and no zip64 sizes.
+ * @version 1.0
+ * @author agent
+ */
+public final class ZipEntryReader {
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int CEN_SIGNATURE = 0x02014b50;
+    private static final int LOC_SIGNATURE = 0x04034b50;
+    private static final int EOCD_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xffff;
+    private static final int CEN_HEADER_SIZE = 46;
+    private static final int LOC_HEADER_SIZE = 30;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final int ENCRYPTED = 1;
+    private static final long ZIP64_SIZE = 0xffffffffL;
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_RETAINED_SIZE = 1024 * 1024;
+    private static final ThreadLocal<ZipEntryReader> READERS =
+        ThreadLocal.withInitial(ZipEntryReader::new);
+
+    private final Inflater inflater = new Inflater(true);
+    private final ByteBuffer localHeader =
+        ByteBuffer.allocate(LOC_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private byte[] directory = new byte[INITIAL_BUFFER_SIZE];
+    private byte[] input = new byte[INITIAL_BUFFER_SIZE];
+    private byte[] output = new byte[INITIAL_BUFFER_SIZE];
+    private int length = 0;
+
+    /**
+     * Constructor.  Use {@code forThread}.
+     */
+    private ZipEntryReader() {
+    }
+
+    /**
+     * The reader of the calling thread.
+     * @return The reader.
+     */
+    public static ZipEntryReader forThread() {
+        return READERS.get();
+    }
+
+    /**
+     * Read one entry of an archive into this reader's buffer.
+     * @param archive The zip archive.
+     * @param entryName The name of the entry.
+     * @return false if the archive has no such entry.
+     * @throws ZipException if the archive is not a zip archive Scatt can read.
+     * @throws IOException if the archive cannot be read.
+     */
+    public boolean read(File archive, String entryName) throws IOException {
+        return read(archive, entryName, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Read one entry of an archive into this reader's buffer, giving up if
+     * it inflates to more than a limit.  The limit is checked against the
+     * size the archive claims and again while inflating, so an entry that
+     * lies about its size is stopped too.
+     * @param archive The zip archive.
+     * @param entryName The name of the entry.
+     * @param maxBytes The most bytes the entry may have.
+     * @return false if the archive has no such entry.
+     * @throws ProjectLimitException if the entry has more than {@code maxBytes}.
+     * @throws ZipException if the archive is not a zip archive Scatt can read.
+     * @throws IOException if the archive cannot be read.
+     */
+    public boolean read(File archive, String entryName, long maxBytes) throws IOException {
+        length = 0;
+        try (FileChannel channel = FileChannel.open(archive.toPath(), StandardOpenOption.READ)) {
+            return read(channel, entryName, maxBytes);
+        } finally {
+            if (directory.length > MAX_RETAINED_SIZE) {
+                directory = new byte[INITIAL_BUFFER_SIZE];
+            }
+            if (input.length > MAX_RETAINED_SIZE) {
+                input = new byte[INITIAL_BUFFER_SIZE];
+            }
+        }
+    }
+
+    /**
+     * Let go of the entry read last, and of the buffer that held it if it is
+     * too big to keep for the next archive.  Call this once the entry's
+     * bytes are no longer needed, so one huge project is not kept for the
+     * life of the thread.
+     */
+    public void release() {
+        length = 0;
+        if (output.length > MAX_RETAINED_SIZE) {
+            output = new byte[INITIAL_BUFFER_SIZE];
+        }
+    }
+
+    /**
+     * Read one entry of an open archive into this reader's buffer.
+     * @param channel The open archive.
+     * @param entryName The name of the entry.
+     * @param maxBytes The most bytes the entry may have.
+     * @return false if the archive has no such entry.
+     * @throws IOException if the archive cannot be read.
+     */
+    private boolean read(FileChannel channel, String entryName, long maxBytes)
+        throws IOException {
+        long fileSize = channel.size();
+        if (fileSize < EOCD_SIZE) {
+            throw new ZipException("Not a zip archive");
+        }
+        int tailSize = (int) Math.min(fileSize, EOCD_SIZE + MAX_COMMENT_SIZE);
+        long tailStart = fileSize - tailSize;
+        directory = ensureCapacity(directory, tailSize);
+        ByteBuffer tail = readAt(channel, tailStart, directory, tailSize);
+        int eocd = findEndOfCentralDirectory(tail);
+        int entryCount = tail.getShort(eocd + 10) & 0xffff;
+        long directorySize = tail.getInt(eocd + 12) & 0xffffffffL;
+        long directoryStart = tail.getInt(eocd + 16) & 0xffffffffL;
+        if (directoryStart + directorySize > tailStart + eocd) {
+            throw new ZipException("Bad central directory");
+        }
+        directory = ensureCapacity(directory, (int) directorySize);
+        ByteBuffer cen = readAt(channel, directoryStart, directory, (int) directorySize);
+        int entry = findEntry(cen, entryCount, entryName.getBytes(StandardCharsets.UTF_8));
+        if (entry < 0) {
+            return false;
+        }
+        if ((cen.getShort(entry + 8) & ENCRYPTED) != 0) {
+            throw new ZipException("Encrypted entry " + entryName);
+        }
+        int method = cen.getShort(entry + 10) & 0xffff;
+        long compressedSize = cen.getInt(entry + 20) & 0xffffffffL;
+        long size = cen.getInt(entry + 24) & 0xffffffffL;
+        long header = cen.getInt(entry + 42) & 0xffffffffL;
+        if (compressedSize == ZIP64_SIZE || size == ZIP64_SIZE || header == ZIP64_SIZE) {
+            throw new ZipException("Zip64 entry " + entryName);
+        }
+        localHeader.clear();
+        if (header + LOC_HEADER_SIZE > fileSize) {
+            throw new ZipException("Bad local header for " + entryName);
+        }
+        readFully(channel, header, localHeader);
+        if (localHeader.getInt(0) != LOC_SIGNATURE) {
+            throw new ZipException("Bad local header for " + entryName);
+        }
+        long data = header + LOC_HEADER_SIZE + (localHeader.getShort(26) & 0xffff)
+            + (localHeader.getShort(28) & 0xffff);
+        if (data + compressedSize > fileSize) {
+            throw new ZipException("Truncated entry " + entryName);
+        }
+        int limit = (int) Math.min(maxBytes, Integer.MAX_VALUE - 8);
+        if (size > limit || method == STORED && compressedSize > limit) {
+            throw tooLarge(entryName, maxBytes);
+        }
+        if (method == STORED) {
+            output = ensureCapacity(output, (int) compressedSize);
+            readAt(channel, data, output, (int) compressedSize);
+            length = (int) compressedSize;
+        } else if (method == DEFLATED) {
+            if (compressedSize > Integer.MAX_VALUE - 8) {
+                throw tooLarge(entryName, maxBytes);
+            }
+            input = ensureCapacity(input, (int) compressedSize);
+            readAt(channel, data, input, (int) compressedSize);
+            inflate((int) compressedSize, (int) size, limit);
+            if (length > limit) {
+                throw tooLarge(entryName, maxBytes);
+            }
+        } else {
+            throw new ZipException("Unsupported compression method " + method);
+        }
+        return true;
+    }
+
+    /**
+     * The bytes of the entry read last.  The array may be longer than the
+     * entry; see {@code getLength}.
+     * @return The buffer holding the entry.
+     */
+    public byte[] getBytes() {
+        return output;
+    }
+
+    /**
+     * The size of the entry read last.
+     * @return The number of bytes of {@code getBytes} that hold the entry.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * A stream over the entry read last.
+     * @return The stream.
+     */
+    public InputStream newInputStream() {
+        return new ByteArrayInputStream(output, 0, length);
+    }
+
+    /**
+     * Find an entry in the central directory.
+     * @param cen The central directory.
+     * @param entryCount The number of entries in it.
+     * @param name The name of the entry, in UTF-8.
+     * @return The position of the entry's central directory header, or -1.
+     * @throws ZipException if the central directory is bad.
+     */
+    private static int findEntry(ByteBuffer cen, int entryCount, byte[] name)
+        throws ZipException {
+        int pos = 0;
+        for (int i = 0; i < entryCount; i++) {
+            if (pos + CEN_HEADER_SIZE > cen.limit() || cen.getInt(pos) != CEN_SIGNATURE) {
+                throw new ZipException("Bad central directory");
+            }
+            int nameLength = cen.getShort(pos + 28) & 0xffff;
+            int extraLength = cen.getShort(pos + 30) & 0xffff;
+            int commentLength = cen.getShort(pos + 32) & 0xffff;
+            if (nameLength == name.length && pos + CEN_HEADER_SIZE + nameLength <= cen.limit()
+                && nameEquals(cen, pos + CEN_HEADER_SIZE, name)) {
+                return pos;
+            }
+            pos += CEN_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+        return -1;
+    }
+
+    /**
+     * Find the end of central directory record, which is the last thing in
+     * the archive but for a comment of up to 64KB.
+     * @param zip The end of the archive.
+     * @return The position of the record.
+     * @throws ZipException if there is no record.
+     */
+    private static int findEndOfCentralDirectory(ByteBuffer zip) throws ZipException {
+        int last = zip.limit() - EOCD_SIZE;
+        int first = Math.max(0, last - MAX_COMMENT_SIZE);
+        for (int pos = last; pos >= first; pos--) {
+            if (zip.getInt(pos) == EOCD_SIGNATURE
+                && pos + EOCD_SIZE + (zip.getShort(pos + 20) & 0xffff) == zip.limit()) {
+                return pos;
+            }
+        }
+        throw new ZipException("Not a zip archive");
+    }
+
+    /**
+     * Compare a name in the archive with the name looked for.
+     * @param zip The central directory.
+     * @param pos Where the name in the archive starts.
+     * @param name The name looked for, in UTF-8.
+     * @return whether they are the same.
+     */
+    private static boolean nameEquals(ByteBuffer zip, int pos, byte[] name) {
+        for (int i = 0; i < name.length; i++) {
+            if (zip.get(pos + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Inflate a deflated entry from the input buffer into the output buffer.
+     * @param compressedSize The size of the entry's data.
+     * @param size The size of the entry once inflated, from the central
+     *     directory.
+     * @param limit Stop once more than this many bytes are inflated.
+     * @throws ZipException if the data cannot be inflated.
+     */
+    private void inflate(int compressedSize, int size, int limit) throws ZipException {
+        output = ensureCapacity(output, size);
+        inflater.reset();
+        inflater.setInput(input, 0, compressedSize);
+        try {
+            while (!inflater.finished() && length <= limit) {
+                if (length == output.length) {
+                    output = Arrays.copyOf(output,
+                        (int) Math.min(2L * output.length + 1, limit + 1L));
+                }
+                int inflated = inflater.inflate(output, length, output.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new ZipException("Truncated deflate data");
+                }
+                length += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException("Bad deflate data: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Read part of the archive into the start of a buffer.
+     * @param channel The open archive.
+     * @param position Where in the archive to start.
+     * @param buffer The buffer.
+     * @param size The number of bytes to read.
+     * @return A little endian view of the bytes read.
+     * @throws IOException if the archive ends first or cannot be read.
+     */
+    private static ByteBuffer readAt(FileChannel channel, long position, byte[] buffer,
+                                     int size) throws IOException {
+        readFully(channel, position, ByteBuffer.wrap(buffer, 0, size));
+        return ByteBuffer.wrap(buffer, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Fill a buffer from the archive with positional reads.
+     * @param channel The open archive.
+     * @param position Where in the archive to start.
+     * @param buffer The buffer, filled from its position to its limit.
+     * @throws IOException if the archive ends first or cannot be read.
+     */
+    private static void readFully(FileChannel channel, long position, ByteBuffer buffer)
+        throws IOException {
+        long next = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, next);
+            if (read < 0) {
+                throw new ZipException("Truncated zip archive");
+            }
+            next += read;
+        }
+    }
+
+    /**
+     * The exception for an entry over the size limit.
+     * @param entryName The name of the entry.
+     * @param maxBytes The limit.
+     * @return The exception.
+     */
+    private static ProjectLimitException tooLarge(String entryName, long maxBytes) {
+        return new ProjectLimitException("The " + entryName + " file in the .sb2 archive is "
+            + "over the limit of " + maxBytes + " bytes.");
+    }
+
+    /**
+     * Make sure a buffer holds at least some number of bytes.
+     * @param buffer The buffer.
+     * @param capacity The number of bytes.
+     * @return The buffer, or a bigger one.  The contents are not kept.
+     */
+    private static byte[] ensureCapacity(byte[] buffer, int capacity) {
+        return buffer.length >= capacity ? buffer : new byte[Math.max(capacity, 2 * buffer.length)];
+    }
+}
@@ -0,0 +1,133 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for statistics over many projects.
+ * @version 1.0
+ * @author agent
+ */
+public class AggregateStatsTest {
+    /**
+     * Percentiles use the nearest rank, and merging is the same as adding.
+     */
+    @Test
+    public void testCountDistribution() {
+        CountDistribution low = new CountDistribution();
+        CountDistribution high = new CountDistribution();
+        for (int i = 1; i <= 10; i++) {
+            low.add(i);
+            high.add(100 * i);
+        }
+        assertEquals(5, low.getMedian());
+        assertEquals(9, low.getPercentile(90));
+        assertEquals(5.5, low.getMean(), 0);
+        assertArrayEquals(new long[] {0, 1, 2, 4, 3}, low.getPowerOfTwoBuckets());
+
+        low.merge(high);
+        assertEquals(20, low.getCount());
+        assertEquals(10, low.getMedian());
+        assertEquals(100, low.getPercentile(55));
+        assertEquals(1000, low.getMax());
+        assertEquals(55 + 5500, low.getSum());
+        assertEquals(0, new CountDistribution().getMedian());
+    }
+
+    /**
+     * Whole nearest ranks are not pushed up by rounding, and large values
+     * are kept exactly.
+     */
+    @Test
+    public void testPercentileRanksAndLargeValues() {
+        CountDistribution hundred = new CountDistribution();
+        for (int i = 1; i <= 100; i++) {
+            hundred.add(i);
+        }
+        assertEquals(7, hundred.getPercentile(7));
+        assertEquals(29, hundred.getPercentile(28.5));
+        CountDistribution twentyFive = new CountDistribution();
+        for (int i = 1; i <= 25; i++) {
+            twentyFive.add(i);
+        }
+        assertEquals(7, twentyFive.getPercentile(28));
+        assertEquals(1, twentyFive.getPercentile(0.1));
+
+        CountDistribution large = new CountDistribution();
+        large.add(3);
+        large.add(1000000);
+        large.add(Integer.MAX_VALUE);
+        CountDistribution merged = new CountDistribution();
+        merged.add(1000000);
+        merged.merge(large);
+        assertEquals(1000000, merged.getMedian());
+        assertEquals(Integer.MAX_VALUE, merged.getPercentile(100));
+        assertEquals(Integer.MAX_VALUE, merged.getMax());
+        long[] buckets = merged.getPowerOfTwoBuckets();
+        assertEquals(32, buckets.length);
+        assertEquals(1, buckets[2]);
+        assertEquals(2, buckets[20]);
+        assertEquals(1, buckets[31]);
+    }
+
+    /**
+     * Stats gathered in parallel and merged match stats gathered one project
+     * at a time.
+     */
+    @Test
+    public void testParallelMatchesSequential() {
+        List<ProjectSummary> projects = new ArrayList<>();
+        File sb2Dir = new File(Utils.getTestResourcePath("GoodSb2Dir"));
+        for (File sb2File : new Sb2Finder().find(sb2Dir)) {
+            projects.add(Sb2Loader.summarize(sb2File, null));
+        }
+        projects.add(Sb2Loader.summarize(new File(Utils.getTestResourcePath("CorruptJson"),
+            "My Mascot! (Gobia!) -D.sb2"), null));
+
+        AggregateStats sequential = new AggregateStats();
+        projects.forEach(sequential::add);
+        AggregateStats parallel = projects.parallelStream().collect(AggregateStats.collector());
+
+        assertEquals(projects.size(), parallel.getProjectCount());
+        assertEquals(1, parallel.getUnreadableCount());
+        assertArrayEquals(sequential.getBlocksByCategory(), parallel.getBlocksByCategory());
+        assertEquals(sequential.getScriptLengths().getSum(), parallel.getScriptLengths().getSum());
+        assertEquals(sequential.getScriptLengths().getMedian(),
+            parallel.getScriptLengths().getMedian());
+        long blocks = Arrays.stream(parallel.getBlocksByCategory()).sum();
+        assertTrue(blocks > 0);
+        assertEquals(parallel.getBlocksByCategory()[0], parallel.getProjectBlocks(0).getSum());
+    }
+
+    /**
+     * The summary comes after the last project, and only when asked for.
+     */
+    @Test
+    public void testReportSummary() {
+        List<ProjectSummary> projects = Arrays.asList(
+            Sb2Loader.summarize(new File(Utils.getTestResourcePath("WizardSpells.sb2")), null));
+        Reporter reporter = new Reporter(Reporter.NUM_PROJECTS);
+        StringWriter without = new StringWriter();
+        reporter.writeSummaries(new PrintWriter(without), 1, projects.iterator());
+        assertEquals("Scratch Report\n\nNumber of projects: 1\n", without.toString());
+
+        reporter.setReportSummary(true);
+        StringWriter with = new StringWriter();
+        reporter.writeSummaries(new PrintWriter(with), 1, projects.iterator());
+        String report = with.toString();
+        assertTrue(report, report.startsWith(without + "\n\nSummary\nProjects: 1\nScripts: "));
+        assertTrue(report, report.contains("\nScript length: mean "));
+        assertTrue(report, report.contains("\n    " + ScriptSpecs.getCategories()[0] + ": "));
+
+        StringWriter sink = new StringWriter();
+        ReportSink.writeAll(new TextReportSink(reporter, new PrintWriter(sink)), 1,
+            projects.iterator());
+        assertEquals(report, sink.toString());
+    }
+}
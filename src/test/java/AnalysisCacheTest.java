@@ -0,0 +1,152 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Collections;
+
+/**
+ * Tests for the persistent analysis cache.
+ * @version 1.0
+ * @author agent
+ */
+public class AnalysisCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * A cached summary survives a save and reopen, reports exactly like a
+     * fresh one, and stays a hit when only the modification time changes.
+     * @throws IOException if the temporary files cannot be written.
+     */
+    @Test
+    public void testHitAfterReopen() throws IOException {
+        File sb2File = copyResource(new File(Utils.getTestResourcePath("WizardSpells.sb2")));
+        File cacheFile = new File(folder.getRoot(), "analysis.cache");
+        AnalysisCache cache = AnalysisCache.open(cacheFile, AnalysisCache.DEFAULT_MAX_BYTES);
+        assertNull(cache.get(sb2File));
+        ProjectSummary fresh = Sb2Loader.summarize(sb2File, cache);
+        cache.save();
+
+        AnalysisCache reopened = AnalysisCache.open(cacheFile, AnalysisCache.DEFAULT_MAX_BYTES);
+        assertEquals(1, reopened.size());
+        ProjectSummary cached = reopened.get(sb2File);
+        assertNotNull(cached);
+        assertEquals(report(fresh), report(cached));
+
+        sb2File.setLastModified(sb2File.lastModified() - 60000);
+        assertNotNull(reopened.get(sb2File));
+
+        Files.write(sb2File.toPath(), new byte[] {0}, StandardOpenOption.APPEND);
+        assertNull(reopened.get(sb2File));
+    }
+
+    /**
+     * A summary cached under one set of limits is not used under another.
+     * @throws IOException if the temporary files cannot be written.
+     */
+    @Test
+    public void testMissWithOtherLimits() throws IOException {
+        File sb2File = copyResource(new File(Utils.getTestResourcePath("WizardSpells.sb2")));
+        AnalysisCache cache = new AnalysisCache(new File(folder.getRoot(), "limits.cache"),
+            AnalysisCache.DEFAULT_MAX_BYTES);
+        Sb2Loader.summarize(sb2File, cache);
+        assertNotNull(cache.get(sb2File, ProjectLimits.DEFAULT));
+        ProjectLimits strict = new ProjectLimits(ProjectLimits.DEFAULT.getMaxBytes(), 1,
+            ProjectLimits.DEFAULT.getMaxBlocks());
+        assertNull(cache.get(sb2File, strict));
+        assertTrue(report(Sb2Loader.summarize(sb2File, cache, strict)).contains("too large"));
+        assertNotNull(cache.get(sb2File, ProjectLimits.DEFAULT));
+    }
+
+    /**
+     * A file that changed after it was read is not cached.
+     * @throws IOException if the temporary files cannot be written.
+     */
+    @Test
+    public void testSkipsFileChangedAfterRead() throws IOException {
+        File sb2File = copyResource(new File(Utils.getTestResourcePath("WizardSpells.sb2")));
+        AnalysisCache cache = new AnalysisCache(new File(folder.getRoot(), "changed.cache"),
+            AnalysisCache.DEFAULT_MAX_BYTES);
+        long size = sb2File.length();
+        long modified = sb2File.lastModified();
+        byte[] hash = AnalysisCache.hash(sb2File, ProjectLimits.DEFAULT);
+        ProjectSummary summary = Sb2Loader.summarize(sb2File, null);
+        Files.write(sb2File.toPath(), new byte[] {0}, StandardOpenOption.APPEND);
+        cache.put(sb2File, size, modified, ProjectLimits.DEFAULT, hash, summary);
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Only project.json is hashed, the same way whether it is hashed while
+     * being read for a summary or on its own.
+     * @throws IOException if the archive cannot be read.
+     */
+    @Test
+    public void testHashesProjectJson() throws IOException {
+        File sb2File = new File(Utils.getTestResourcePath("WizardSpells.sb2"));
+        MessageDigest digest = AnalysisCache.newDigest();
+        digest.update(Extractor.getProjectJSON(sb2File.getPath()).getBytes(StandardCharsets.UTF_8));
+        byte[] expected = digest.digest();
+        assertArrayEquals(expected, AnalysisCache.hash(sb2File, ProjectLimits.DEFAULT));
+        digest = AnalysisCache.newDigest();
+        Extractor.getProjectJSONObject(sb2File.getPath(), ProjectLimits.DEFAULT, digest);
+        assertArrayEquals(expected, digest.digest());
+    }
+
+    /**
+     * The least recently used projects are dropped to stay under the limit.
+     * @throws IOException if the temporary files cannot be written.
+     */
+    @Test
+    public void testEvictsToSizeLimit() throws IOException {
+        File first = copyResource(new File(Utils.getTestResourcePath("WizardSpells.sb2")));
+        File second = copyResource(new File(Utils.getTestResourcePath("GoodSb2Dir"),
+            "Calamity Jane (Horse) Polyart.sb2"));
+        AnalysisCache cache = new AnalysisCache(new File(folder.getRoot(), "small.cache"), 1);
+        Sb2Loader.summarize(first, cache);
+        Sb2Loader.summarize(second, cache);
+        assertEquals(0, cache.size());
+
+        cache = new AnalysisCache(new File(folder.getRoot(), "medium.cache"), 1500);
+        Sb2Loader.summarize(first, cache);
+        Sb2Loader.summarize(second, cache);
+        assertEquals(1, cache.size());
+        assertNotNull(cache.get(second));
+    }
+
+    /**
+     * Copy a test resource into the temporary folder.
+     * @param source The resource file.
+     * @return The copy.
+     * @throws IOException if the copy fails.
+     */
+    private File copyResource(File source) throws IOException {
+        File copy = new File(folder.getRoot(), source.getName());
+        Files.copy(source.toPath(), copy.toPath());
+        return copy;
+    }
+
+    /**
+     * Report on one project.
+     * @param summary The project.
+     * @return The full report text.
+     */
+    private String report(ProjectSummary summary) {
+        StringWriter sw = new StringWriter();
+        new Reporter().writeSummaries(new PrintWriter(sw), 1,
+            Collections.singletonList(summary).iterator());
+        return sw.toString();
+    }
+}
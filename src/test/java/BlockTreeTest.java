@@ -0,0 +1,148 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import org.json.JSONArray;
+import org.junit.Test;
+
+/**
+ * Tests for the compact block tree behind Script.
+ * @version 1.0
+ * @author agent
+ */
+public class BlockTreeTest {
+    /**
+     * Blocks are stored in pre-order, and each C-block knows where the blocks
+     * nested inside it end.
+     */
+    @Test
+    public void testPreOrderAndSubtreeEnds() {
+        Sprites sprites = new Sprites(Utils.getResourceJSONObject("NestedBlocks.json"));
+        BlockTree tree = sprites.getScriptsForSprite("Apple")[0].getBlockTree();
+        String[] expectedOpcodes = {
+            "doRepeat", "forward:", "bounceOffEdge", "doIf", "turnRight:",
+            "forward:", "doUntil", "heading:", "turnLeft:"
+        };
+        int[] expectedEnds = {9, 2, 3, 9, 5, 6, 9, 8, 9};
+        assertEquals(expectedOpcodes.length, tree.size());
+        int[] actualEnds = new int[tree.size()];
+        for (int i = 0; i < tree.size(); i++) {
+            assertEquals(expectedOpcodes[i], ScriptSpecs.getOpcode(tree.getOpcodeId(i)));
+            actualEnds[i] = tree.getSubtreeEnd(i);
+        }
+        assertArrayEquals(expectedEnds, actualEnds);
+    }
+
+    /**
+     * The analysis is computed once and reports the deepest C-block nesting.
+     */
+    @Test
+    public void testAnalysisIsCachedAndCountsNesting() {
+        Sprites sprites = new Sprites(Utils.getResourceJSONObject("NestedBlocks.json"));
+        Script script = sprites.getScriptsForSprite("Apple")[0];
+        ScriptAnalysis analysis = script.getAnalysis();
+        assertSame(analysis, script.getAnalysis());
+        assertEquals(9, analysis.getLength());
+        assertEquals(3, analysis.getNestingDepth());
+        assertEquals(0, new Script(null).getNestingDepth());
+    }
+
+    /**
+     * Unknown opcodes get the unknown id and count as "undefined".
+     */
+    @Test
+    public void testUnknownOpcode() {
+        int id = ScriptSpecs.getOpcodeId("notARealOpcode");
+        assertEquals(ScriptSpecs.UNKNOWN_OPCODE_ID, id);
+        assertEquals(0, ScriptSpecs.getCategoryOfOpcodeId(id));
+        assertEquals("Control",
+            ScriptSpecs.getCategories()[ScriptSpecs.getCategoryOfOpcodeId(
+                ScriptSpecs.getOpcodeId("doForever"))]);
+    }
+
+    /**
+     * Counting every block takes in argument reporters and the stacks of
+     * C-blocks missing from the stack table, but not procDef's parameters or
+     * a variable's name.
+     */
+    @Test
+    public void testAllBlocks() {
+        JSONArray blocks = new JSONArray("[[\"whenGreenFlag\"],"
+            + "[\"forward:\", [\"+\", [\"xpos\"], 2]],"
+            + "[\"doForeverIf\", [\"touching:\", \"edge\"], [[\"say:\", [\"answer\"]]]],"
+            + "[\"procDef\", \"jump %n\", [\"height\"], [10], false],"
+            + "[\"doWaitUntil\", [\"mousePressed\"]]]");
+        assertEquals(5, BlockTree.fromBlocks(blocks).size());
+        BlockTree tree = BlockTree.fromBlocks(blocks, true);
+        String[] expectedOpcodes = {
+            "whenGreenFlag", "forward:", "+", "xpos", null, "touching:", "say:",
+            "answer", null, "doWaitUntil", "mousePressed"
+        };
+        int[] expectedEnds = {1, 4, 4, 4, 8, 6, 8, 8, 9, 11, 11};
+        assertTree(expectedOpcodes, expectedEnds, tree);
+
+        blocks = new JSONArray("[[\"doForLoop\", \"i\", [\"timer\"], [[\"doWhile\","
+            + " [\"mousePressed\"], [[\"call\", \"jump %n %s\", [\"answer\"], [\"xpos\"]]]]]],"
+            + "[\"setVar:to:\", [\"i\"], [\"ypos\"]]]");
+        tree = BlockTree.fromBlocks(blocks, true);
+        expectedOpcodes = new String[] {
+            null, "timer", null, "mousePressed", null, "answer", "xpos", null, "ypos"
+        };
+        expectedEnds = new int[] {7, 2, 7, 4, 7, 6, 7, 9, 9};
+        assertTree(expectedOpcodes, expectedEnds, tree);
+    }
+
+    /**
+     * C-blocks missing from the stack table still count as "undefined" in
+     * the default count, as they always have.
+     */
+    @Test
+    public void testDefaultCountKeepsUnlistedCBlocksUndefined() {
+        JSONArray blocks = new JSONArray("[[\"doForeverIf\", [\"mousePressed\"],"
+            + " [[\"forward:\", 10]]], [\"doWhile\", [\"mousePressed\"], [[\"forward:\", 10]]]]");
+        BlockTree tree = BlockTree.fromBlocks(blocks);
+        assertEquals(2, tree.size());
+        int[] blocksByCategory = new int[ScriptSpecs.getCategories().length];
+        tree.sumBlocksByCategory(blocksByCategory);
+        assertEquals(2, blocksByCategory[0]);
+        assertEquals(0, blocksByCategory[6]);
+    }
+
+    /**
+     * Check the opcodes and subtree ends of a tree.
+     * @param expectedOpcodes The opcodes in pre-order, null for unknown ones.
+     * @param expectedEnds The subtree ends.
+     * @param tree The tree.
+     */
+    private static void assertTree(String[] expectedOpcodes, int[] expectedEnds,
+                                   BlockTree tree) {
+        assertEquals(expectedOpcodes.length, tree.size());
+        int[] actualEnds = new int[tree.size()];
+        for (int i = 0; i < tree.size(); i++) {
+            assertEquals(expectedOpcodes[i], ScriptSpecs.getOpcode(tree.getOpcodeId(i)));
+            actualEnds[i] = tree.getSubtreeEnd(i);
+        }
+        assertArrayEquals(expectedEnds, actualEnds);
+    }
+
+    /**
+     * Very deeply nested stacks and reporters are built without running out
+     * of thread stack.
+     */
+    @Test
+    public void testDeepNesting() {
+        int depth = 100000;
+        JSONArray stack = new JSONArray().put(new JSONArray().put("forward:").put(10));
+        JSONArray reporter = new JSONArray().put("xpos");
+        for (int i = 0; i < depth; i++) {
+            stack = new JSONArray().put(new JSONArray().put("doIf").put(true).put(stack));
+            reporter = new JSONArray().put("abs").put(reporter);
+        }
+        BlockTree stacks = BlockTree.fromBlocks(stack);
+        assertEquals(depth + 1, stacks.size());
+        assertEquals(depth + 1, stacks.getSubtreeEnd(0));
+        assertEquals(depth, ScriptAnalysis.analyze(stacks).getNestingDepth());
+        JSONArray blocks = new JSONArray().put(new JSONArray().put("say:").put(reporter));
+        assertEquals(1, BlockTree.fromBlocks(blocks).size());
+        assertEquals(depth + 2, BlockTree.fromBlocks(blocks, true).size());
+    }
+}
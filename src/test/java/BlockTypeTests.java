@@ -38,6 +38,22 @@ public class BlockTypeTests {
 //        System.out.println("expected : " + expectedCategory + ", actual: " + actualCategory);
         assertEquals(expectedCategory, actualCategory);
     }
+    /**
+     * Every opcode in the commandsByType map has an id that maps back to it
+     * and to the same category.
+     */
+    @Test
+    public void testOpcodeIdsMatchCommandsByType() {
+        Map<String, Integer> commandsByType = ScriptSpecs.getCommandsByType();
+        assertEquals(commandsByType.size() + 1, ScriptSpecs.getOpcodeCount());
+        for (Map.Entry<String, Integer> entry : commandsByType.entrySet()) {
+            int id = ScriptSpecs.getOpcodeId(entry.getKey());
+            assertEquals(entry.getKey(), ScriptSpecs.getOpcode(id));
+            assertEquals((int) entry.getValue(), ScriptSpecs.getCategoryOfOpcodeId(id));
+        }
+        assertEquals(ScriptSpecs.UNKNOWN_OPCODE_ID, ScriptSpecs.getOpcodeId(null));
+        assertEquals(ScriptSpecs.UNKNOWN_OPCODE_ID, ScriptSpecs.getOpcodeId("forward"));
+    }
     /**
      * Test getBlocksByCategoryForSprite with an easy case.
      */
@@ -0,0 +1,158 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for script fingerprints and finding duplicate scripts.
+ * @version 1.0
+ * @author agent
+ */
+public class DuplicateDetectorTest {
+    private static final String[] OPCODES = {"forward:", "turnRight:", "turnLeft:",
+        "heading:", "gotoX:y:", "changeXposBy:", "changeYposBy:", "say:", "show", "hide"};
+    private static final int LENGTH = 30;
+
+    /**
+     * A script of varied blocks, with one block optionally changed.
+     * @param changed The index of the block to change, or -1.
+     * @return The block tuples.
+     */
+    private static JSONArray blocks(int changed) {
+        JSONArray blocks = new JSONArray();
+        Random random = new Random(1);
+        for (int i = 0; i < LENGTH; i++) {
+            int opcode = random.nextInt(OPCODES.length);
+            if (i == changed) {
+                opcode = (opcode + 1) % OPCODES.length;
+            }
+            blocks.put(new JSONArray().put(OPCODES[opcode]));
+        }
+        return blocks;
+    }
+
+    /**
+     * A project with one sprite holding some scripts.
+     * @param name The name of the project.
+     * @param scripts The block tuples of each script.
+     * @return The project's summary.
+     */
+    private static ProjectSummary project(String name, JSONArray... scripts) {
+        JSONArray scriptTuples = new JSONArray();
+        for (JSONArray blocks : scripts) {
+            scriptTuples.put(new JSONArray().put(10).put(10).put(blocks));
+        }
+        JSONObject sprite = new JSONObject().put("objName", "Cat").put("scripts", scriptTuples)
+            .put("spriteInfo", new JSONObject());
+        JSONObject stage = new JSONObject().put("objName", "Stage")
+            .put("children", new JSONArray().put(sprite));
+        return ProjectSummary.of(new Sb2(stage, name));
+    }
+
+    /**
+     * The same blocks give the same fingerprint, and a changed block gives a
+     * different exact hash but a similar signature.
+     */
+    @Test
+    public void testFingerprint() {
+        ScriptFingerprint a = ScriptFingerprint.of(BlockTree.fromBlocks(blocks(-1)));
+        ScriptFingerprint copy = ScriptFingerprint.of(BlockTree.fromBlocks(blocks(-1)));
+        ScriptFingerprint changed = ScriptFingerprint.of(BlockTree.fromBlocks(blocks(15)));
+        assertEquals(a.getExactHash(), copy.getExactHash());
+        assertEquals(1.0, a.similarity(copy), 0);
+        assertNotEquals(a.getExactHash(), changed.getExactHash());
+        assertTrue(a.similarity(changed) > 0.5);
+    }
+
+    /**
+     * Copies across projects are grouped, near copies are paired, and
+     * copies within one project, short scripts and different scripts are
+     * not reported.
+     */
+    @Test
+    public void testFindDuplicates() {
+        JSONArray different = new JSONArray();
+        for (int i = 0; i < LENGTH; i++) {
+            different.put(new JSONArray().put("show"));
+        }
+        JSONArray shortScript = new JSONArray().put(new JSONArray().put("hide"));
+        DuplicateDetector detector = new DuplicateDetector(DuplicateDetector.DEFAULT_MIN_LENGTH,
+            0.5);
+        detector.add(1, project("one.sb2", blocks(-1), different, shortScript, different));
+        detector.add(2, project("two.sb2", blocks(-1), shortScript));
+        detector.add(3, project("three.sb2", blocks(15)));
+
+        List<List<DuplicateDetector.ScriptRef>> same = detector.getSameScripts();
+        assertEquals(1, same.size());
+        assertEquals(2, same.get(0).size());
+        assertEquals(1, same.get(0).get(0).getProjectNo());
+        assertEquals(1, same.get(0).get(0).getScriptNo());
+        assertEquals(2, same.get(0).get(1).getProjectNo());
+
+        List<DuplicateDetector.SimilarPair> similar = detector.getSimilarScripts();
+        assertEquals(1, similar.size());
+        assertEquals(1, similar.get(0).getFirst().getProjectNo());
+        assertEquals(3, similar.get(0).getSecond().getProjectNo());
+        assertEquals("Cat", similar.get(0).getSecond().getSpriteName());
+
+        StringWriter sw = new StringWriter();
+        new Reporter().reportDuplicates(new PrintWriter(sw), detector);
+        assertTrue(sw.toString(), sw.toString().startsWith("\n\nDuplicate scripts\n"
+            + "Same scripts in different projects:\n\n"
+            + "    Project 1: one.sb2, Sprite 1: Cat, Script 1 (length 30)\n"
+            + "    Project 2: two.sb2, Sprite 1: Cat, Script 1 (length 30)\n"));
+    }
+
+    /**
+     * A near copy is paired with an exact copy in another project even when
+     * the first of those copies is in its own project.
+     */
+    @Test
+    public void testNearCopyOfScriptCopiedElsewhere() {
+        DuplicateDetector detector = new DuplicateDetector(DuplicateDetector.DEFAULT_MIN_LENGTH,
+            0.5);
+        detector.add(1, project("one.sb2", blocks(-1), blocks(15)));
+        detector.add(2, project("two.sb2", blocks(-1)));
+
+        List<DuplicateDetector.SimilarPair> similar = detector.getSimilarScripts();
+        assertEquals(1, similar.size());
+        assertEquals(1, similar.get(0).getFirst().getProjectNo());
+        assertEquals(2, similar.get(0).getFirst().getScriptNo());
+        assertEquals(2, similar.get(0).getSecond().getProjectNo());
+        assertEquals(1, similar.get(0).getSecond().getScriptNo());
+    }
+
+    /**
+     * With sprites in authoring order, the duplicate scripts number sprites
+     * the way the project sections do.
+     */
+    @Test
+    public void testAuthoringOrderNumbers() {
+        JSONArray scripts = new JSONArray().put(new JSONArray().put(10).put(10).put(blocks(-1)));
+        JSONObject zebra = new JSONObject().put("objName", "Zebra").put("scripts", scripts)
+            .put("spriteInfo", new JSONObject());
+        JSONObject ant = new JSONObject().put("objName", "Ant")
+            .put("spriteInfo", new JSONObject());
+        JSONObject stage = new JSONObject().put("objName", "Stage")
+            .put("children", new JSONArray().put(zebra).put(ant));
+        DuplicateDetector detector = new DuplicateDetector();
+        detector.add(1, ProjectSummary.of(new Sb2(stage, "one.sb2")));
+        detector.add(2, ProjectSummary.of(new Sb2(stage, "two.sb2")));
+        DuplicateDetector.ScriptRef ref = detector.getSameScripts().get(0).get(0);
+        assertEquals(2, ref.getSpriteNo());
+        assertEquals(1, ref.getAuthoredSpriteNo());
+
+        Reporter reporter = new Reporter();
+        reporter.setAuthoringOrder(true);
+        StringWriter sw = new StringWriter();
+        reporter.reportDuplicates(new PrintWriter(sw), detector);
+        assertTrue(sw.toString(), sw.toString().contains(
+            "    Project 1: one.sb2, Sprite 1: Zebra, Script 1 (length 30)\n"));
+    }
+}
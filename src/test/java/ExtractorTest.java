@@ -0,0 +1,78 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import java.io.File;
+import java.io.IOException;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Tests for reading project.json straight out of .sb2 archives.
+ * @version 1.0
+ * @author agent
+ */
+public class ExtractorTest {
+    /**
+     * A project parsed from the zip gives the same answers as one parsed
+     * from the whole json text.
+     * @throws IOException if the archive cannot be read.
+     */
+    @Test
+    public void testReadsProjectFromZip() throws IOException {
+        String sb2Path = Utils.getTestResourcePath("WizardSpells.sb2");
+        JSONObject stage = Extractor.getProjectJSONObject(sb2Path);
+        assertNotNull(stage);
+        Sb2 full = new Sb2(new JSONObject(Extractor.getProjectJSON(sb2Path)), "Wizard");
+        Sb2 fromZip = new Sb2(sb2Path);
+        assertNull(fromZip.getErrorMessage());
+        assertFalse(fromZip.failedToRead());
+        assertArrayEquals(full.getSpriteNames(), new Sb2(stage, "Wizard").getSpriteNames());
+        assertArrayEquals(full.getSpriteNames(), fromZip.getSpriteNames());
+        assertEquals(full.getGlobalVariableCount(), fromZip.getGlobalVariableCount());
+        for (String spriteName : full.getSpriteNames()) {
+            assertArrayEquals(full.getScriptLengthsForSprite(spriteName),
+                fromZip.getScriptLengthsForSprite(spriteName));
+        }
+    }
+
+    /**
+     * An archive without project.json gives no project, and an Sb2 that
+     * says so.
+     * @throws IOException if the archive cannot be read.
+     */
+    @Test
+    public void testMissingEntry() throws IOException {
+        String sb2Path = new File(Utils.getTestResourcePath("MissingJson"),
+            "My Mascot! (Gobia!) -D.sb2").getPath();
+        assertNull(Extractor.getProjectJSON(sb2Path));
+        assertNull(Extractor.getProjectJSONObject(sb2Path));
+        Sb2 sb2 = new Sb2(sb2Path);
+        assertFalse(sb2.failedToRead());
+        assertTrue(sb2.getErrorMessage().startsWith("This project contains no data."));
+    }
+
+    /**
+     * An archive whose project.json is not json text throws, and gives an
+     * Sb2 that says its data is corrupt.
+     * @throws IOException if the archive cannot be read.
+     */
+    @Test
+    public void testCorruptEntry() throws IOException {
+        String sb2Path = new File(Utils.getTestResourcePath("CorruptJson"),
+            "My Mascot! (Gobia!) -D.sb2").getPath();
+        try {
+            Extractor.getProjectJSONObject(sb2Path);
+            fail("Corrupt json text was parsed");
+        } catch (JSONException e) {
+            assertNotNull(e.getMessage());
+        }
+        Sb2 sb2 = new Sb2(sb2Path);
+        assertFalse(sb2.failedToRead());
+        assertTrue(sb2.getErrorMessage().startsWith("This project's data is corrupt."));
+    }
+}
@@ -0,0 +1,93 @@
+import static org.junit.Assert.assertEquals;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for rewriting only the changed sections of a report.
+ * @version 1.0
+ * @author agent
+ */
+public class IncrementalReportWriterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Every kind of update gives exactly the report a full write would, and
+     * only changed sections are formatted.
+     * @throws IOException if the report cannot be written.
+     */
+    @Test
+    public void testMatchesFullReport() throws IOException {
+        File goodDir = new File(Utils.getTestResourcePath("GoodSb2Dir"));
+        ProjectSummary calamity = summarize(new File(goodDir, "Calamity Jane (Horse) Polyart.sb2"));
+        ProjectSummary mascot = summarize(new File(goodDir, "My Mascot! (Gobia!) -D.sb2"));
+        ProjectSummary wizard = summarize(new File(Utils.getTestResourcePath("WizardSpells.sb2")));
+        ProjectSummary corrupt = summarize(new File(Utils.getTestResourcePath("CorruptJson"),
+            "My Mascot! (Gobia!) -D.sb2"));
+        File reportFile = new File(folder.getRoot(), "report.txt");
+        Reporter reporter = new Reporter();
+
+        List<ProjectSummary> projects = new ArrayList<>(Arrays.asList(calamity, mascot, wizard));
+        IncrementalReportWriter writer = new IncrementalReportWriter(reporter, reportFile);
+        writer.write(projects);
+        assertReport(reporter, projects, reportFile);
+        assertEquals(3, writer.getSectionsFormatted());
+
+        writer.write(projects);
+        assertReport(reporter, projects, reportFile);
+        assertEquals(0, writer.getSectionsFormatted());
+
+        projects.set(1, corrupt);
+        writer = new IncrementalReportWriter(reporter, reportFile);
+        writer.write(projects);
+        assertReport(reporter, projects, reportFile);
+        assertEquals(1, writer.getSectionsFormatted());
+
+        projects.remove(0);
+        writer.write(projects);
+        assertReport(reporter, projects, reportFile);
+        assertEquals(2, writer.getSectionsFormatted());
+
+        projects.add(calamity);
+        writer.write(projects);
+        assertReport(reporter, projects, reportFile);
+        assertEquals(1, writer.getSectionsFormatted());
+
+        Files.write(reportFile.toPath(), new byte[] {'x'});
+        writer.write(projects);
+        assertReport(reporter, projects, reportFile);
+        assertEquals(3, writer.getSectionsFormatted());
+    }
+
+    /**
+     * Summarize a project.
+     * @param sb2File The project.
+     * @return Its summary.
+     */
+    private static ProjectSummary summarize(File sb2File) {
+        return Sb2Loader.summarize(sb2File, null);
+    }
+
+    /**
+     * Check that a report file is what a full write would give.
+     * @param reporter The Reporter.
+     * @param projects The projects.
+     * @param reportFile The report.
+     * @throws IOException if the report cannot be read.
+     */
+    private void assertReport(Reporter reporter, List<ProjectSummary> projects, File reportFile)
+            throws IOException {
+        File expected = new File(folder.getRoot(), "expected.txt");
+        reporter.writeSummaries(expected.getPath(), projects.size(), projects.iterator());
+        assertEquals(new String(Files.readAllBytes(expected.toPath()), StandardCharsets.UTF_8),
+            new String(Files.readAllBytes(reportFile.toPath()), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,107 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import org.junit.Test;
+import java.io.IOException;
+import java.io.StringReader;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Tests that the streaming ProjectReader keeps everything Scatt reports on.
+ * @version 1.0
+ * @author agent
+ */
+public class ProjectReaderTest {
+    /**
+     * The pruned project must give the same answers as the full one.
+     * @throws IOException never, the text is in memory.
+     */
+    @Test
+    public void testPrunedMatchesFull() throws IOException {
+        String[] jsonFiles = {
+            "ManyBlockTypes.json", "NestedBlocks.json", "SimpleBlockTypes.json",
+            "StageScripts.json", "WizardSpells.json", "scratcharia.json"
+        };
+        for (String jsonFile : jsonFiles) {
+            String text = Utils.getResourceContent("ScratchJsonFiles/" + jsonFile);
+            Sb2 full = new Sb2(new JSONObject(text), jsonFile);
+            Sb2 pruned = new Sb2(ProjectReader.read(new StringReader(text)), jsonFile);
+            assertArrayEquals(jsonFile, full.getSpriteNames(), pruned.getSpriteNames());
+            assertEquals(full.getGlobalVariableCount(), pruned.getGlobalVariableCount());
+            assertArrayEquals(Script.sumBlocksByCategory(full.getScriptsForStage()),
+                Script.sumBlocksByCategory(pruned.getScriptsForStage()));
+            for (String spriteName : full.getSpriteNames()) {
+                assertArrayEquals(full.getScriptLengthsForSprite(spriteName),
+                    pruned.getScriptLengthsForSprite(spriteName));
+            }
+        }
+    }
+
+    /**
+     * Subtrees Scatt does not report on are dropped, and so are children that
+     * are not sprites.
+     * @throws IOException never, the text is in memory.
+     */
+    @Test
+    public void testSkipsUnusedData() throws IOException {
+        String text = "{\"objName\": \"Stage\", \"costumes\": [{\"a\": [1, {\"b\": \"]}\"}]}],"
+            + " \"children\": [{\"target\": \"Stage\", \"cmd\": \"timer\"},"
+            + " {\"objName\": \"Cat\\u0021\", \"sounds\": [], \"spriteInfo\": {\"x\": 1}}],"
+            + " \"variables\": [{\"name\": 'score', \"value\": 0}]}";
+        JSONObject stage = ProjectReader.read(new StringReader(text));
+        assertFalse(stage.has("costumes"));
+        assertEquals(1, stage.getJSONArray("children").length());
+        JSONObject cat = stage.getJSONArray("children").getJSONObject(0);
+        assertEquals("Cat!", cat.getString("objName"));
+        assertFalse(cat.has("sounds"));
+        assertEquals("score", stage.getJSONArray("variables").getJSONObject(0).get("name"));
+    }
+
+    /**
+     * A trailing comma before a closing bracket or brace is accepted, as
+     * org.json accepts it.
+     * @throws IOException never, the text is in memory.
+     */
+    @Test
+    public void testTrailingCommas() throws IOException {
+        String text = "{\"objName\": \"Stage\", \"children\": [{\"objName\": \"Cat\","
+            + " \"spriteInfo\": {},},],"
+            + " \"variables\": [{\"name\": \"score\", \"value\": [0, 1,],},],}";
+        JSONObject expected = new JSONObject(text);
+        JSONObject stage = ProjectReader.read(new StringReader(text));
+        assertEquals("Cat", stage.getJSONArray("children").getJSONObject(0).getString("objName"));
+        JSONObject score = stage.getJSONArray("variables").getJSONObject(0);
+        assertEquals(expected.getJSONArray("variables").getJSONObject(0).toString(),
+            score.toString());
+        assertEquals(2, score.getJSONArray("value").length());
+    }
+
+    /**
+     * A missing array element is a null and fields may be separated by a
+     * semicolon, as org.json reads them.
+     * @throws IOException never, the text is in memory.
+     */
+    @Test
+    public void testElidedElementsAndSemicolons() throws IOException {
+        String[] values = {"[1,,2]", "[,]", "[,1]", "[1,,]", "[1, , 2]"};
+        for (String value : values) {
+            String text = "{\"objName\": \"Stage\"; \"variables\": [{\"name\": \"a\";"
+                + " \"value\": " + value + "}]}";
+            JSONObject expected = new JSONObject(text).getJSONArray("variables").getJSONObject(0);
+            JSONObject actual = ProjectReader.read(new StringReader(text))
+                .getJSONArray("variables").getJSONObject(0);
+            assertEquals(value, expected.toString(), actual.toString());
+        }
+    }
+
+    /**
+     * Malformed text is reported the same way org.json reports it.
+     * @throws IOException never, the text is in memory.
+     */
+    @Test(expected = JSONException.class)
+    public void testCorruptText() throws IOException {
+        ProjectReader.read(new StringReader(
+            "{\"objName\": \"Stage\", \"scripts\": [[0, 0, [\"show\"], \"hide\"]]], \"x\": 1}"));
+    }
+}
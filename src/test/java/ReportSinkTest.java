@@ -0,0 +1,138 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.json.JSONObject;
+import org.junit.Test;
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for the JSON Lines and CSV report formats, and writing several
+ * formats in one pass.
+ * @version 1.0
+ * @author agent
+ */
+public class ReportSinkTest {
+    private final List<ProjectSummary> projects = Arrays.asList(
+        Sb2Loader.summarize(new File(Utils.getTestResourcePath("WizardSpells.sb2")), null),
+        Sb2Loader.summarize(new File(Utils.getTestResourcePath("CorruptJson"),
+            "My Mascot! (Gobia!) -D.sb2"), null));
+
+    /**
+     * One pass writes every format, and the text is the same as the
+     * Reporter's.
+     */
+    @Test
+    public void testSeveralFormatsInOnePass() {
+        StringWriter text = new StringWriter();
+        StringWriter jsonLines = new StringWriter();
+        StringWriter csv = new StringWriter();
+        Reporter reporter = new Reporter();
+        ReportSink.writeAll(new MultiReportSink(
+            new TextReportSink(reporter, new PrintWriter(text)),
+            new JsonLinesReportSink(Reporter.REPORT_ALL, new PrintWriter(jsonLines)),
+            new CsvReportSink(Reporter.REPORT_ALL, new PrintWriter(csv))),
+            projects.size(), projects.iterator());
+
+        StringWriter expected = new StringWriter();
+        new Reporter().writeSummaries(new PrintWriter(expected), projects.size(),
+            projects.iterator());
+        assertEquals(expected.toString(), text.toString());
+        assertFalse(jsonLines.toString().isEmpty());
+        assertFalse(csv.toString().isEmpty());
+    }
+
+    /**
+     * Every line is a JSON object, there is a record for the report, each
+     * project, each sprite and each script, and the numbers match.
+     */
+    @Test
+    public void testJsonLines() {
+        StringWriter sw = new StringWriter();
+        ReportSink.writeAll(new JsonLinesReportSink(Reporter.REPORT_ALL, new PrintWriter(sw)),
+            projects.size(), projects.iterator());
+        String[] lines = sw.toString().split("\n");
+        ProjectSummary wizard = projects.get(0);
+        int scripts = wizard.getStageScriptCount();
+        for (int i = 0; i < wizard.getSpriteCount(); i++) {
+            scripts += wizard.getScriptCount(i);
+        }
+        assertEquals(1 + 2 + wizard.getSpriteCount() + scripts, lines.length);
+
+        assertEquals(2, new JSONObject(lines[0]).getInt("projects"));
+        JSONObject project = new JSONObject(lines[1]);
+        assertEquals("project", project.getString("type"));
+        assertEquals("WizardSpells.sb2", project.getString("name"));
+        assertEquals(wizard.getSpriteCount(), project.getInt("sprites"));
+        JSONObject corrupt = new JSONObject(lines[lines.length - 1]);
+        assertEquals(2, corrupt.getInt("project"));
+        assertEquals(projects.get(1).getErrorMessage(), corrupt.getString("error"));
+
+        int length = 0;
+        for (String line : lines) {
+            JSONObject record = new JSONObject(line);
+            if ("script".equals(record.getString("type"))) {
+                length += record.getInt("length");
+            }
+        }
+        int expectedLength = 0;
+        for (int i = 0; i < wizard.getStageScriptCount(); i++) {
+            expectedLength += wizard.getStageScript(i).getLength();
+        }
+        for (int i = 0; i < wizard.getSpriteCount(); i++) {
+            for (int j = 0; j < wizard.getScriptCount(i); j++) {
+                expectedLength += wizard.getScript(i, j).getLength();
+            }
+        }
+        assertEquals(expectedLength, length);
+    }
+
+    /**
+     * The flags choose the records and fields.
+     */
+    @Test
+    public void testJsonLinesFollowsFlags() {
+        StringWriter sw = new StringWriter();
+        ReportSink.writeAll(new JsonLinesReportSink(Reporter.SCRIPT_LENGTHS, new PrintWriter(sw)),
+            projects.size(), projects.iterator());
+        for (String line : sw.toString().split("\n")) {
+            JSONObject record = new JSONObject(line);
+            if ("script".equals(record.getString("type"))) {
+                assertTrue(record.has("length"));
+                assertFalse(record.has("blocksByCategory"));
+                assertFalse(record.has("stage"));
+            } else {
+                assertTrue(record.has("error"));
+            }
+        }
+    }
+
+    /**
+     * The CSV has a header, a row per script and a row for the unreadable
+     * project, all with the same number of columns.  The error message has a
+     * line break in it, so it is quoted.
+     */
+    @Test
+    public void testCsv() {
+        StringWriter sw = new StringWriter();
+        ReportSink.writeAll(new CsvReportSink(Reporter.REPORT_ALL, new PrintWriter(sw)),
+            projects.size(), projects.iterator());
+        String[] rows = sw.toString().split("\r\n");
+        ProjectSummary wizard = projects.get(0);
+        int scripts = wizard.getStageScriptCount();
+        for (int i = 0; i < wizard.getSpriteCount(); i++) {
+            scripts += wizard.getScriptCount(i);
+        }
+        assertEquals(1 + scripts + 1, rows.length);
+        int columns = 7 + ScriptSpecs.getCategories().length;
+        assertTrue(rows[0].startsWith("project,name,error,sprite,sprite_name,script,length,"));
+        for (String row : rows) {
+            assertEquals(row, columns, row.split(",", -1).length);
+        }
+        assertTrue(rows[rows.length - 1].startsWith("2,My Mascot! (Gobia!) -D.sb2,\""
+            + projects.get(1).getErrorMessage() + "\",,,"));
+    }
+}
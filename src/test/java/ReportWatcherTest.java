@@ -0,0 +1,110 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assume.assumeTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for keeping a report up to date as projects change.
+ * @version 1.0
+ * @author agent
+ */
+public class ReportWatcherTest {
+    private static final long TIMEOUT_SECONDS = 20;
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private final BlockingQueue<String> updates = new LinkedBlockingQueue<>();
+
+    /**
+     * The report follows projects being added and deleted, and always matches
+     * a report written from scratch.
+     * @throws Exception if the files cannot be copied or the watcher fails.
+     */
+    @Test
+    public void testReportFollowsChanges() throws Exception {
+        File sb2Dir = folder.newFolder("submissions");
+        File reportFile = new File(folder.getRoot(), "report.txt");
+        File goodDir = new File(Utils.getTestResourcePath("GoodSb2Dir"));
+        String calamity = "Calamity Jane (Horse) Polyart.sb2";
+        Files.copy(new File(goodDir, calamity).toPath(), new File(sb2Dir, calamity).toPath());
+
+        ReportWatcher watcher = new ReportWatcher(sb2Dir, reportFile, new Reporter(),
+            updates::add);
+        watcher.setQuietMillis(20);
+        Thread thread = new Thread(watcher::run);
+        thread.start();
+        try {
+            awaitReport(sb2Dir, reportFile);
+            Files.copy(new File(Utils.getTestResourcePath("WizardSpells.sb2")).toPath(),
+                new File(sb2Dir, "WizardSpells.sb2").toPath());
+            assertEquals(2, awaitReport(sb2Dir, reportFile));
+            Files.delete(new File(sb2Dir, calamity).toPath());
+            assertEquals(1, awaitReport(sb2Dir, reportFile));
+        } finally {
+            watcher.close();
+            thread.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+        }
+    }
+
+    /**
+     * Projects whose names differ only in case are reported in the same
+     * order as a report written from scratch.
+     * @throws Exception if the files cannot be copied or the watcher fails.
+     */
+    @Test
+    public void testNamesDifferingInCase() throws Exception {
+        File sb2Dir = folder.newFolder("submissions");
+        File reportFile = new File(folder.getRoot(), "report.txt");
+        Files.copy(new File(Utils.getTestResourcePath("WizardSpells.sb2")).toPath(),
+            new File(sb2Dir, "a.sb2").toPath());
+        Files.copy(new File(Utils.getTestResourcePath("GoodSb2Dir"),
+            "Calamity Jane (Horse) Polyart.sb2").toPath(), new File(sb2Dir, "A.sb2").toPath());
+        File[] sb2Files = new Sb2Finder().find(sb2Dir);
+        assumeTrue("The file system ignores case", sb2Files.length == 2);
+        assertEquals("A.sb2", sb2Files[0].getName());
+        assertEquals("a.sb2", sb2Files[1].getName());
+
+        ReportWatcher watcher = new ReportWatcher(sb2Dir, reportFile, new Reporter(),
+            updates::add);
+        watcher.setQuietMillis(20);
+        Thread thread = new Thread(watcher::run);
+        thread.start();
+        try {
+            assertEquals(2, awaitReport(sb2Dir, reportFile));
+        } finally {
+            watcher.close();
+            thread.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+        }
+    }
+
+    /**
+     * Wait until the report matches a report written from scratch.
+     * @param sb2Dir The watched directory.
+     * @param reportFile The report.
+     * @return The number of projects in the directory.
+     * @throws InterruptedException if interrupted while waiting.
+     * @throws IOException if the report cannot be read.
+     */
+    private int awaitReport(File sb2Dir, File reportFile)
+            throws InterruptedException, IOException {
+        File[] sb2Files = new Sb2Finder().find(sb2Dir);
+        StringWriter expected = new StringWriter();
+        new Reporter().writeReport(expected, new Sb2Loader(1).loadAll(sb2Files));
+        String actual = null;
+        while (!expected.toString().equals(actual)) {
+            assertNotNull("The report was not updated",
+                updates.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            actual = new String(Files.readAllBytes(reportFile.toPath()), StandardCharsets.UTF_8);
+        }
+        return sb2Files.length;
+    }
+}
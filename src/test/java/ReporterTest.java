@@ -1,8 +1,14 @@
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 import org.junit.Test;
 import java.util.List;
 import java.util.ArrayList;
+import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 /**
  * This test class is meant to test that the reporter outputs the appropriate
  * information in relation to the ouptut from SB2 and the given test JSON
@@ -53,6 +59,65 @@ public class ReporterTest {
             "OddCombo");
     }
 
+    /**
+     * Report files are UTF-8 whatever the platform charset, and are the same
+     * as the report written to a Writer.
+     * @throws IOException if the report file cannot be used.
+     */
+    @Test
+    public void testReportFileIsUtf8() throws IOException {
+        List<Sb2> sb2List = new ArrayList<Sb2>();
+        sb2List.add(new Sb2(Utils.getResourceJSONObject("WizardSpells.json"),
+            "Zauberspr\u00fcche"));
+        File reportFile = File.createTempFile("report", ".txt");
+        try {
+            new Reporter().writeReport(reportFile.getPath(), sb2List);
+            StringWriter sw = new StringWriter();
+            new Reporter().writeReport(sw, sb2List);
+            assertEquals(sw.toString(), new String(Files.readAllBytes(reportFile.toPath()),
+                StandardCharsets.UTF_8));
+        } finally {
+            reportFile.delete();
+        }
+    }
+
+    /**
+     * Sprites can be reported in the order they were made, numbered in that
+     * order.
+     */
+    @Test
+    public void testAuthoringOrder() {
+        List<Sb2> sb2List = new ArrayList<Sb2>();
+        sb2List.add(new Sb2(Utils.getResourceJSONObject("WizardSpells.json"), "WizardProject"));
+        Reporter reporter = new Reporter(Reporter.SPRITE_HEADERS);
+        reporter.setAuthoringOrder(true);
+        StringWriter sw = new StringWriter();
+        reporter.writeReport(sw, sb2List);
+        assertEquals("Scratch Report\n\n\n"
+            + "    Sprite 1: Wizard Girl\n\n"
+            + "    Sprite 2: Creature\n\n"
+            + "    Sprite 3: Instructions\n", sw.toString());
+    }
+
+    /**
+     * A section that fails part way leaves nothing behind for the next one.
+     */
+    @Test
+    public void testFailedSectionIsDropped() {
+        Reporter reporter = new Reporter(Reporter.NUM_PROJECTS | Reporter.PROJECT_HEADERS);
+        StringWriter sw = new StringWriter();
+        PrintWriter pw = new PrintWriter(sw);
+        try {
+            reporter.reportProject(1, pw, null);
+            fail("A missing project cannot be reported");
+        } catch (NullPointerException e) {
+            assertEquals("", sw.toString());
+        }
+        reporter.reportHeader(1, pw);
+        pw.flush();
+        assertEquals("Scratch Report\n\nNumber of projects: 1\n", sw.toString());
+    }
+
     /**
      * Test the reporter configuration flags.
      * @param bitVector the bit vector specifying what to report.
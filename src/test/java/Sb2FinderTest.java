@@ -0,0 +1,71 @@
+import static org.junit.Assert.assertEquals;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Tests for finding .sb2 files in nested directories.
+ * @version 1.0
+ * @author agent
+ */
+public class Sb2FinderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * By default only the chosen directory is searched, sorted by name.
+     */
+    @Test
+    public void testFlatSkipsSubdirectories() {
+        File[] found = new Sb2Finder().find(new File(Utils.getTestResourcePath("GoodSb2Dir")));
+        assertEquals(2, found.length);
+        assertEquals("Calamity Jane (Horse) Polyart.sb2", found[0].getName());
+        assertEquals("My Mascot! (Gobia!) -D.sb2", found[1].getName());
+    }
+
+    /**
+     * A recursive search finds projects in subdirectories too, sorted by
+     * their path inside the chosen directory.
+     */
+    @Test
+    public void testRecursiveFindsSubdirectories() {
+        File[] found = new Sb2Finder(Sb2Finder.UNLIMITED, false)
+            .find(new File(Utils.getTestResourcePath("GoodSb2Dir")));
+        assertEquals(3, found.length);
+        assertEquals("Calamity Jane (Horse) Polyart.sb2", found[0].getName());
+        assertEquals("My Mascot! (Gobia!) -D.sb2", found[1].getName());
+        assertEquals("Scratcharia v2.8.1.sb2", found[2].getName());
+    }
+
+    /**
+     * Paths are compared as a whole, so a/b/two.sb2 comes before a/one.sb2.
+     * The depth limit is respected, directories named like projects are not
+     * projects, and a symbolic link back up the tree does not loop forever.
+     * @throws IOException if the temporary files cannot be made.
+     */
+    @Test
+    public void testDepthLimitAndLinkLoop() throws IOException {
+        File root = folder.getRoot();
+        File one = new File(root, "a");
+        File two = new File(one, "b");
+        assertEquals(true, two.mkdirs());
+        assertEquals(true, new File(root, "dir.sb2").mkdir());
+        assertEquals(true, new File(root, "top.sb2").createNewFile());
+        assertEquals(true, new File(one, "one.sb2").createNewFile());
+        assertEquals(true, new File(two, "two.sb2").createNewFile());
+        assertEquals(true, new File(two, "notes.txt").createNewFile());
+        Files.createSymbolicLink(new File(two, "loop").toPath(), root.toPath());
+
+        assertEquals(1, new Sb2Finder().find(root).length);
+        assertEquals(2, new Sb2Finder(2, false).find(root).length);
+        assertEquals(3, new Sb2Finder(Sb2Finder.UNLIMITED, false).find(root).length);
+        File[] followed = new Sb2Finder(Sb2Finder.UNLIMITED, true).find(root);
+        assertEquals(3, followed.length);
+        assertEquals("two.sb2", followed[0].getName());
+        assertEquals("one.sb2", followed[1].getName());
+        assertEquals("top.sb2", followed[2].getName());
+    }
+}
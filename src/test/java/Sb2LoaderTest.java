@@ -0,0 +1,151 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Tests for loading projects on several threads.
+ * @version 1.0
+ * @author agent
+ */
+public class Sb2LoaderTest {
+    /**
+     * Parallel loading must hand back the projects in the order of the files.
+     * The readable files must really be read, or every project would be the
+     * same IO error and the order would prove nothing.
+     */
+    @Test
+    public void testLoadAllKeepsFileOrder() {
+        File goodDir = new File(Utils.getTestResourcePath("GoodSb2Dir"));
+        File[] files = {
+            new File(goodDir, "My Mascot! (Gobia!) -D.sb2"),
+            new File(Utils.getTestResourcePath("WizardSpells.sb2")),
+            new File(goodDir, "Calamity Jane (Horse) Polyart.sb2"),
+            new File(Utils.getTestResourcePath("CorruptJson"), "My Mascot! (Gobia!) -D.sb2")
+        };
+        List<Sb2> sequential = new Sb2Loader(1).loadAll(files);
+        List<Sb2> parallel = new Sb2Loader(4).loadAll(files);
+        List<Sb2> pooled = new Sb2Loader().loadAll(files);
+        assertEquals(files.length, parallel.size());
+        for (int i = 0; i < files.length; i++) {
+            assertEquals(files[i].getName(), parallel.get(i).getName());
+            assertEquals(sequential.get(i).getName(), pooled.get(i).getName());
+            assertEquals(sequential.get(i).getErrorMessage(), parallel.get(i).getErrorMessage());
+        }
+        for (int i = 0; i < 3; i++) {
+            assertNull(files[i].getPath(), parallel.get(i).getErrorMessage());
+        }
+        assertNotNull(parallel.get(3).getErrorMessage());
+        assertTrue(parallel.get(3).getErrorMessage().startsWith("This project's data is corrupt"));
+    }
+    /**
+     * Streaming must hand back the projects in the order of the files, whatever
+     * the worker count.
+     */
+    @Test
+    public void testStreamKeepsFileOrder() {
+        File dir = new File(Utils.getTestResourcePath("GoodSb2Dir"));
+        File[] files = {
+            new File(dir, "My Mascot! (Gobia!) -D.sb2"),
+            new File(dir, "Calamity Jane (Horse) Polyart.sb2"),
+            new File(dir, "My Mascot! (Gobia!) -D.sb2"),
+            new File(dir, "Calamity Jane (Horse) Polyart.sb2"),
+            new File(dir, "My Mascot! (Gobia!) -D.sb2")
+        };
+        for (int workers : new int[] {1, 2, Sb2Loader.DEFAULT_WORKERS}) {
+            Iterator<Sb2> sb2s = new Sb2Loader(workers).stream(files);
+            for (File file : files) {
+                assertTrue(sb2s.hasNext());
+                assertEquals(file.getName(), sb2s.next().getName());
+            }
+            assertFalse(sb2s.hasNext());
+        }
+    }
+
+    /**
+     * A project over any of the limits is reported as too large, is not
+     * cached, and does not stop the projects after it.
+     */
+    @Test
+    public void testLimits() {
+        File wizard = new File(Utils.getTestResourcePath("WizardSpells.sb2"));
+        File[] files = {wizard, new File(Utils.getTestResourcePath("GoodSb2Dir"),
+            "Calamity Jane (Horse) Polyart.sb2")};
+        long bytes = ProjectLimits.DEFAULT_MAX_BYTES;
+        int depth = ProjectLimits.DEFAULT_MAX_DEPTH;
+        int blocks = ProjectLimits.DEFAULT_MAX_BLOCKS;
+        ProjectLimits[] tooSmall = {
+            new ProjectLimits(100, depth, blocks),
+            new ProjectLimits(bytes, 3, blocks),
+            new ProjectLimits(bytes, depth, 1)
+        };
+        for (ProjectLimits limits : tooSmall) {
+            Sb2Loader loader = new Sb2Loader(1);
+            loader.setLimits(limits);
+            List<Sb2> sb2s = loader.loadAll(files);
+            assertTrue(sb2s.get(0).exceededLimits());
+            String error = sb2s.get(0).getErrorMessage();
+            assertTrue(error, error.startsWith("This project is too large to report on.\n"));
+            assertEquals(files[1].getName(), sb2s.get(1).getName());
+        }
+        assertFalse(Sb2Loader.load(wizard, ProjectLimits.DEFAULT).exceededLimits());
+
+        AnalysisCache cache = new AnalysisCache(null, AnalysisCache.DEFAULT_MAX_BYTES);
+        assertNotNull(Sb2Loader.summarize(wizard, cache, tooSmall[0]).getErrorMessage());
+        assertNull(cache.get(wizard));
+        assertNull(Sb2Loader.summarize(wizard, cache, ProjectLimits.DEFAULT).getErrorMessage());
+        assertNotNull(cache.get(wizard));
+    }
+
+    /**
+     * Analysing the sprites in parallel, from outside the pool or from one
+     * of its workers, gives the same summary as analysing them in turn.
+     * @throws IOException if a summary cannot be written.
+     * @throws InterruptedException if the test is interrupted.
+     * @throws ExecutionException if the analysis fails.
+     */
+    @Test
+    public void testParallelSprites()
+        throws IOException, InterruptedException, ExecutionException {
+        File wizard = new File(Utils.getTestResourcePath("WizardSpells.sb2"));
+        byte[] expected = bytes(Sb2Loader.summarize(wizard, null, ProjectLimits.DEFAULT));
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertArrayEquals(expected,
+                bytes(Sb2Loader.summarize(wizard, null, ProjectLimits.DEFAULT, pool)));
+            assertArrayEquals(expected, bytes(pool.submit(() ->
+                Sb2Loader.summarize(wizard, null, ProjectLimits.DEFAULT, pool)).get()));
+        } finally {
+            pool.shutdown();
+        }
+        Sb2Loader loader = new Sb2Loader(2);
+        loader.setParallelSprites(true);
+        Iterator<ProjectSummary> summaries = loader.streamSummaries(new File[] {wizard, wizard},
+            null);
+        assertArrayEquals(expected, bytes(summaries.next()));
+        assertArrayEquals(expected, bytes(summaries.next()));
+    }
+
+    /**
+     * The binary form of a summary.
+     * @param summary The summary.
+     * @return The bytes {@code writeTo} writes.
+     * @throws IOException if the summary cannot be written.
+     */
+    private static byte[] bytes(ProjectSummary summary) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        summary.writeTo(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,133 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Tests for the command line interface.
+ * @version 1.0
+ * @author agent
+ */
+public class ScattCliTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    /**
+     * The report written to a file matches the one the Reporter writes for
+     * the same projects and flags.
+     * @throws IOException if the report cannot be read.
+     */
+    @Test
+    public void testReportToFile() throws IOException {
+        File goodDir = new File(Utils.getTestResourcePath("GoodSb2Dir"));
+        File reportFile = new File(folder.getRoot(), "report.txt");
+        int status = run("-o", reportFile.getPath(), "-f", "all_2017_4_24,stage_scripts",
+            "-j", "2", "--no-cache", goodDir.getPath());
+        assertEquals(ScattCli.EXIT_OK, status);
+
+        StringWriter expected = new StringWriter();
+        new Reporter(Reporter.ALL_2017_4_24 | Reporter.STAGE_SCRIPTS).writeReport(expected,
+            new Sb2Loader(1).loadAll(new Sb2Finder().find(goodDir)));
+        assertEquals(expected.toString(),
+            new String(Files.readAllBytes(reportFile.toPath()), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * With no output file the report goes to standard output, and files and
+     * recursive directories can be mixed.
+     */
+    @Test
+    public void testReportToStandardOutput() {
+        File goodDir = new File(Utils.getTestResourcePath("GoodSb2Dir"));
+        int status = run("-r", "-f", "NUM_PROJECTS", "--no-cache",
+            Utils.getTestResourcePath("WizardSpells.sb2"), goodDir.getPath());
+        assertEquals(ScattCli.EXIT_OK, status);
+        assertEquals("Scratch Report\n\nNumber of projects: 4\n", out.toString());
+    }
+
+    /**
+     * Analyses are only kept when a cache file is named, never in the home
+     * directory by default.
+     */
+    @Test
+    public void testCacheOnlyWhenAsked() {
+        String home = System.getProperty("user.home");
+        File cacheFile = new File(folder.getRoot(), "analysis.cache");
+        try {
+            System.setProperty("user.home", folder.getRoot().getPath());
+            String sb2Path = Utils.getTestResourcePath("WizardSpells.sb2");
+            assertEquals(ScattCli.EXIT_OK, run("-f", "NUM_PROJECTS", sb2Path));
+            assertEquals(0, folder.getRoot().list().length);
+            assertEquals(ScattCli.EXIT_OK,
+                run("-f", "NUM_PROJECTS", "--cache", cacheFile.getPath(), sb2Path));
+            assertTrue(cacheFile.isFile());
+        } finally {
+            System.setProperty("user.home", home);
+        }
+    }
+
+    /**
+     * Several formats are written in one run, each to its own file.
+     * @throws IOException if a report cannot be read.
+     */
+    @Test
+    public void testSeveralFormats() throws IOException {
+        File base = new File(folder.getRoot(), "report");
+        int status = run("--format", "text,jsonl,csv", "-o", base.getPath(), "--no-cache",
+            Utils.getTestResourcePath("WizardSpells.sb2"));
+        assertEquals(ScattCli.EXIT_OK, status);
+        StringWriter expected = new StringWriter();
+        new Reporter().writeReport(expected, new Sb2Loader(1).loadAll(
+            new File[] {new File(Utils.getTestResourcePath("WizardSpells.sb2"))}));
+        assertEquals(expected.toString(), new String(
+            Files.readAllBytes(new File(folder.getRoot(), "report.txt").toPath()),
+            StandardCharsets.UTF_8));
+        assertTrue(new File(folder.getRoot(), "report.jsonl").length() > 0);
+        assertTrue(new File(folder.getRoot(), "report.csv").length() > 0);
+        assertEquals(ScattCli.EXIT_USAGE, run("--format", "text,csv", "dir"));
+    }
+
+    /**
+     * Bad arguments give a usage message and their own exit status.
+     */
+    @Test
+    public void testUsageErrors() {
+        assertEquals(ScattCli.EXIT_USAGE, run());
+        assertEquals(ScattCli.EXIT_USAGE, run("-f", "NO_SUCH_FLAG", "dir"));
+        assertEquals(ScattCli.EXIT_USAGE, run("--format", "xml", "dir"));
+        assertEquals(ScattCli.EXIT_USAGE, run("-j"));
+        assertTrue(err.toString().contains("Usage: scatt"));
+        assertEquals(ScattCli.EXIT_FAILED,
+            run("--no-cache", new File(folder.getRoot(), "missing").getPath()));
+    }
+
+    /**
+     * Flags can be given by name or number.
+     */
+    @Test
+    public void testParseFlags() {
+        assertEquals(Reporter.REPORT_ALL, ScattCli.parseFlags("REPORT_ALL"));
+        assertEquals(Reporter.REPORT_ALL, ScattCli.parseFlags("0xFFFFFFFF"));
+        assertEquals(Reporter.NUM_PROJECTS | Reporter.SCRIPT_BYCATTOT,
+            ScattCli.parseFlags("num_projects, 0x200"));
+    }
+
+    /**
+     * Run the command line interface.
+     * @param args command line arguments
+     * @return The exit status.
+     */
+    private int run(String... args) {
+        return new ScattCli(new PrintStream(out, true), new PrintStream(err, true)).run(args);
+    }
+}
@@ -0,0 +1,84 @@
+import static org.junit.Assert.assertEquals;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for writing script metrics in columns and reading them back.
+ * @version 1.0
+ * @author agent
+ */
+public class ScriptMetricsTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<ProjectSummary> projects = Arrays.asList(
+        Sb2Loader.summarize(new File(Utils.getTestResourcePath("WizardSpells.sb2")), null),
+        Sb2Loader.summarize(new File(Utils.getTestResourcePath("CorruptJson"),
+            "My Mascot! (Gobia!) -D.sb2"), null));
+
+    /**
+     * Every script gets a row, in several row groups, and the column sums
+     * match the summaries.  The unreadable project has no rows.
+     * @throws IOException if the file cannot be written or read.
+     */
+    @Test
+    public void testWriteAndRead() throws IOException {
+        File file = folder.newFile("report.metrics");
+        ReportSink.writeAll(new ScriptMetricsWriter(file, 3), projects.size(),
+            projects.iterator());
+
+        ProjectSummary wizard = projects.get(0);
+        int scripts = wizard.getStageScriptCount();
+        int length = 0;
+        int[] blocksByCat = new int[ScriptSpecs.getCategories().length];
+        for (int i = 0; i < wizard.getStageScriptCount(); i++) {
+            length += wizard.getStageScript(i).getLength();
+            wizard.getStageScript(i).addBlocksByCategory(blocksByCat);
+        }
+        for (int i = 0; i < wizard.getSpriteCount(); i++) {
+            scripts += wizard.getScriptCount(i);
+            for (int j = 0; j < wizard.getScriptCount(i); j++) {
+                length += wizard.getScript(i, j).getLength();
+                wizard.getScript(i, j).addBlocksByCategory(blocksByCat);
+            }
+        }
+
+        try (ScriptMetricsReader reader = new ScriptMetricsReader(file)) {
+            assertEquals(ScriptMetricsWriter.getColumnNames(), reader.getColumnNames());
+            assertEquals(scripts, reader.getRowCount());
+            assertEquals(length, reader.sum(ScriptMetricsWriter.LENGTH));
+            assertEquals(scripts, reader.sum(ScriptMetricsWriter.PROJECT));
+            long[] sums = reader.sumBlocksByCategory();
+            for (int i = 0; i < blocksByCat.length; i++) {
+                assertEquals(blocksByCat[i], sums[i]);
+            }
+
+            for (int i = 0; i < reader.getRowCount(); i++) {
+                assertEquals(reader.getInt(ScriptMetricsWriter.SPRITE, i) == 0,
+                    reader.getString(ScriptMetricsWriter.SPRITE_NAME, i) == null);
+            }
+            int row = wizard.getStageScriptCount();
+            assertEquals("WizardSpells.sb2",
+                reader.getString(ScriptMetricsWriter.PROJECT_NAME, row));
+            assertEquals(wizard.getSpriteName(0),
+                reader.getString(ScriptMetricsWriter.SPRITE_NAME, row));
+            assertEquals(1, reader.getInt(ScriptMetricsWriter.SPRITE, row));
+            assertEquals(wizard.getScript(0, 0).getLength(),
+                reader.getInt(ScriptMetricsWriter.LENGTH, row));
+        }
+    }
+
+    /**
+     * A file that is not a metrics file is refused.
+     * @throws IOException if the file cannot be written.
+     */
+    @Test(expected = IOException.class)
+    public void testNotAMetricsFile() throws IOException {
+        new ScriptMetricsReader(new File(Utils.getTestResourcePath("WizardSpells.sb2"))).close();
+    }
+}
@@ -1,7 +1,17 @@
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.json.JSONArray;
+import org.json.JSONObject;
 import org.junit.Test;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 /**
@@ -50,5 +60,81 @@ public class SpritesTests {
         ));
 
     }
-
+    /**
+     * Threads asking for the same sprite's scripts at once all get the same
+     * array.
+     * @throws InterruptedException if the test is interrupted.
+     * @throws ExecutionException if a thread fails.
+     */
+    @Test
+    public void testGetScriptsForSpriteFromManyThreads()
+        throws InterruptedException, ExecutionException {
+        for (int round = 0; round < 20; round++) {
+            Sprites sprites = new Sprites(Utils.getResourceJSONObject("WizardSpells.json"));
+            ExecutorService pool = Executors.newFixedThreadPool(8);
+            List<Future<Script[]>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(pool.submit(() -> sprites.getScriptsForSprite("Creature")));
+            }
+            pool.shutdown();
+            Script[] first = results.get(0).get();
+            for (Future<Script[]> result : results) {
+                assertSame(first, result.get());
+            }
+            assertSame(first, sprites.getScriptsForSprite("Creature"));
+            assertEquals(4, first.length);
+        }
+    }
+    /**
+     * A stage whose sprites have the given names.
+     * @param names The sprite names.
+     * @return The stage.
+     */
+    private static JSONObject stage(String... names) {
+        JSONArray children = new JSONArray();
+        for (String name : names) {
+            children.put(new JSONObject().put("objName", name)
+                .put("spriteInfo", new JSONObject()));
+        }
+        return new JSONObject().put("objName", "Stage").put("children", children);
+    }
+    /**
+     * Sprites with the same name are numbered from _0, skipping names that
+     * are taken, and a sprite with no name is NO_NAME.
+     */
+    @Test
+    public void testUniqueSpriteNames() {
+        assertTrue(Arrays.equals(new String[] {"Cat_0", "Cat_1", "Cat_2", "Cat_3", "NO_NAME"},
+            new Sprites(stage("Cat", "Cat", "Cat_2", "Cat", "")).getSpriteNames()));
+        assertTrue(Arrays.equals(new String[] {"Cat_0", "Cat_1", "Cat_1_0", "Cat_1_1"},
+            new Sprites(stage("Cat", "Cat", "Cat_1", "Cat")).getSpriteNames()));
+        String[] many = new String[5000];
+        Arrays.fill(many, "Cat");
+        String[] names = new Sprites(stage(many)).getSpriteNames();
+        assertEquals(many.length, names.length);
+        assertTrue(Arrays.asList(names).contains("Cat_0"));
+        assertTrue(Arrays.asList(names).contains("Cat_4999"));
+    }
+    /**
+     * The sorted names are built once and cannot be changed, and the
+     * authoring order follows the stage's children with the final names.
+     */
+    @Test
+    public void testSpriteOrders() {
+        Sprites sprites = new Sprites(stage("Dog", "Cat", "Cat", "Bird"));
+        assertEquals(Arrays.asList("Bird", "Cat_0", "Cat_1", "Dog"),
+            sprites.getSortedSpriteNames());
+        assertSame(sprites.getSortedSpriteNames(), sprites.getSortedSpriteNames());
+        assertEquals(Arrays.asList("Dog", "Cat_0", "Cat_1", "Bird"),
+            sprites.getSpriteNamesInAuthoringOrder());
+        try {
+            sprites.getSortedSpriteNames().set(0, "Fish");
+            fail("the sorted names can be changed");
+        } catch (UnsupportedOperationException e) {
+            assertEquals("Bird", sprites.getSpriteNames()[0]);
+        }
+        ProjectSummary summary = ProjectSummary.of(new Sb2(stage("Dog", "Cat", "Bird"), "pets"));
+        assertEquals("Dog", summary.getSpriteName(summary.getSpriteIndexInAuthoringOrder(0)));
+        assertEquals("Bird", summary.getSpriteName(summary.getSpriteIndexInAuthoringOrder(2)));
+    }
 }
@@ -0,0 +1,163 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Tests for reading one entry of a zip archive without ZipFile.
+ * @version 1.0
+ * @author agent
+ */
+public class ZipEntryReaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * project.json reads the same as it does through ZipFile.
+     * @throws IOException if the archive cannot be read.
+     */
+    @Test
+    public void testSameAsZipFile() throws IOException {
+        File sb2 = new File(Utils.getTestResourcePath("WizardSpells.sb2"));
+        assertEntry(sb2, "project.json", readWithZipFile(sb2, "project.json"));
+    }
+
+    /**
+     * Stored entries, deflated entries bigger than the buffer, and entries
+     * after other entries are read; a missing entry is not.
+     * @throws IOException if the archive cannot be written or read.
+     */
+    @Test
+    public void testStoredAndLargeEntries() throws IOException {
+        byte[] stored = "{\"objName\": \"Stage\"}".getBytes("UTF-8");
+        byte[] large = new byte[300 * 1024];
+        Random random = new Random(1);
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) ('a' + random.nextInt(4));
+        }
+        File zip = folder.newFile("test.sb2");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            ZipEntry entry = new ZipEntry("0.png");
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(stored.length);
+            CRC32 crc = new CRC32();
+            crc.update(stored);
+            entry.setCrc(crc.getValue());
+            out.putNextEntry(entry);
+            out.write(stored);
+            out.putNextEntry(new ZipEntry("project.json"));
+            out.write(large);
+            out.setComment("made by a test");
+        }
+        assertEntry(zip, "0.png", stored);
+        assertEntry(zip, "project.json", large);
+        assertFalse(ZipEntryReader.forThread().read(zip, "1.wav"));
+    }
+
+    /**
+     * A buffer grown for a big entry is not kept once it is released.
+     * @throws IOException if the archive cannot be written or read.
+     */
+    @Test
+    public void testReleaseDropsLargeBuffer() throws IOException {
+        byte[] large = new byte[3 * 1024 * 1024];
+        File zip = folder.newFile("large.sb2");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            out.putNextEntry(new ZipEntry("project.json"));
+            out.write(large);
+        }
+        ZipEntryReader reader = ZipEntryReader.forThread();
+        assertTrue(reader.read(zip, "project.json"));
+        assertEquals(large.length, reader.getLength());
+        reader.release();
+        assertEquals(0, reader.getLength());
+        assertTrue(reader.getBytes().length < large.length);
+    }
+
+    /**
+     * An archive cut short is refused with an exception, not an error.
+     * @throws IOException if the archive cannot be copied or read.
+     */
+    @Test(expected = ZipException.class)
+    public void testTruncatedArchive() throws IOException {
+        File zip = folder.newFile("truncated.sb2");
+        Files.copy(new File(Utils.getTestResourcePath("WizardSpells.sb2")).toPath(),
+            zip.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        try (RandomAccessFile file = new RandomAccessFile(zip, "rw")) {
+            file.setLength(file.length() / 2);
+        }
+        ZipEntryReader.forThread().read(zip, "project.json");
+    }
+
+    /**
+     * An .sb2 with no project.json has no entry to read.
+     * @throws IOException if the archive cannot be read.
+     */
+    @Test
+    public void testMissingEntry() throws IOException {
+        File sb2 = new File(Utils.getTestResourcePath("MissingJson"),
+            "My Mascot! (Gobia!) -D.sb2");
+        assertFalse(ZipEntryReader.forThread().read(sb2, "project.json"));
+    }
+
+    /**
+     * A file that is not a zip archive is refused.
+     * @throws IOException if the file cannot be read.
+     */
+    @Test(expected = ZipException.class)
+    public void testNotAZipArchive() throws IOException {
+        File notZip = new File(Utils.getTestResourcePath("DummyForTestGetFileContents1.txt"));
+        ZipEntryReader.forThread().read(notZip, "project.json");
+    }
+
+    /**
+     * Read an entry and check it.
+     * @param zip The archive.
+     * @param name The entry.
+     * @param expected What the entry holds.
+     * @throws IOException if the archive cannot be read.
+     */
+    private static void assertEntry(File zip, String name, byte[] expected) throws IOException {
+        ZipEntryReader reader = ZipEntryReader.forThread();
+        assertTrue(reader.read(zip, name));
+        assertArrayEquals(expected, Arrays.copyOf(reader.getBytes(), reader.getLength()));
+    }
+
+    /**
+     * Read an entry the old way.
+     * @param zip The archive.
+     * @param name The entry.
+     * @return What the entry holds.
+     * @throws IOException if the archive cannot be read.
+     */
+    private static byte[] readWithZipFile(File zip, String name) throws IOException {
+        try (ZipFile zipFile = new ZipFile(zip);
+             InputStream in = zipFile.getInputStream(zipFile.getEntry(name))) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                bytes.write(buffer, 0, n);
+            }
+            return bytes.toByteArray();
+        }
+    }
+}